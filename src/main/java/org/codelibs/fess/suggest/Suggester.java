@@ -1,26 +1,33 @@
 package org.codelibs.fess.suggest;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.stream.Stream;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.codelibs.core.lang.StringUtil;
 import org.codelibs.fess.suggest.analysis.SuggestAnalyzer;
 import org.codelibs.fess.suggest.constants.FieldNames;
 import org.codelibs.fess.suggest.constants.SuggestConstants;
 import org.codelibs.fess.suggest.converter.ReadingConverter;
+import org.codelibs.fess.suggest.entity.SuggestItem;
 import org.codelibs.fess.suggest.exception.SuggesterException;
 import org.codelibs.fess.suggest.index.SuggestIndexer;
 import org.codelibs.fess.suggest.normalizer.Normalizer;
+import org.codelibs.fess.suggest.request.popularwords.PopularWordsPool;
 import org.codelibs.fess.suggest.request.popularwords.PopularWordsRequestBuilder;
+import org.codelibs.fess.suggest.request.suggest.ElevateWordOverlay;
+import org.codelibs.fess.suggest.request.suggest.NegativeResultCache;
+import org.codelibs.fess.suggest.request.suggest.ShortPrefixTable;
 import org.codelibs.fess.suggest.request.suggest.SuggestRequestBuilder;
+import org.codelibs.fess.suggest.request.suggest.SuggestSessionCache;
 import org.codelibs.fess.suggest.settings.SuggestSettings;
+import org.codelibs.fess.suggest.util.SuggestUtil;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.admin.indices.alias.Alias;
 import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
 import org.elasticsearch.action.admin.indices.alias.get.GetAliasesResponse;
@@ -28,13 +35,28 @@ import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsResponse;
 import org.elasticsearch.action.admin.indices.get.GetIndexResponse;
 import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.engine.VersionConflictEngineException;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHit;
 
 public class Suggester {
+    private static final Logger logger = LogManager.getLogger(Suggester.class);
+
+    private static final int MAX_MIGRATE_RETRY = 10;
+
     protected final Client client;
     protected final SuggestSettings suggestSettings;
     protected final ReadingConverter readingConverter;
@@ -47,9 +69,29 @@ public class Suggester {
 
     protected final ExecutorService threadPool;
 
+    protected final ElevateWordOverlay elevateWordOverlay;
+
+    protected ShortPrefixTable shortPrefixTable;
+
+    protected NegativeResultCache negativeResultCache;
+
+    protected SuggestSessionCache sessionCache;
+
+    protected PopularWordsPool popularWordsPool;
+
+    protected volatile Boolean rankModeAvailable;
+
+    protected volatile Boolean legacyIdIndex;
+
     public Suggester(final Client client, final SuggestSettings settings, final ReadingConverter readingConverter,
             final ReadingConverter contentsReadingConverter, final Normalizer normalizer, final SuggestAnalyzer analyzer,
             final ExecutorService threadPool) {
+        this(client, settings, readingConverter, contentsReadingConverter, normalizer, analyzer, threadPool, null);
+    }
+
+    public Suggester(final Client client, final SuggestSettings settings, final ReadingConverter readingConverter,
+            final ReadingConverter contentsReadingConverter, final Normalizer normalizer, final SuggestAnalyzer analyzer,
+            final ExecutorService threadPool, final ElevateWordOverlay elevateWordOverlay) {
         this.client = client;
         this.suggestSettings = settings;
         this.readingConverter = readingConverter;
@@ -59,18 +101,63 @@ public class Suggester {
         this.index = settings.getAsString(SuggestSettings.DefaultKeys.INDEX, StringUtil.EMPTY);
         this.type = settings.getAsString(SuggestSettings.DefaultKeys.TYPE, StringUtil.EMPTY);
         this.threadPool = threadPool;
+        this.elevateWordOverlay = elevateWordOverlay;
     }
 
     public SuggestRequestBuilder suggest() {
-        return new SuggestRequestBuilder(client, readingConverter, normalizer).setIndex(getSearchAlias(index)).setType(type);
+        final boolean canonicalReading = suggestSettings.getAsBoolean(SuggestSettings.DefaultKeys.CANONICAL_READING, false);
+        if (shortPrefixTable != null) {
+            shortPrefixTable.buildAsync(client, getSearchAlias(index), type, canonicalReading, threadPool);
+        }
+        return new SuggestRequestBuilder(client, readingConverter, normalizer).setIndex(getSearchAlias(index)).setType(type)
+                .setElevateWordOverlay(elevateWordOverlay)
+                .setReadingRouting(suggestSettings.getAsBoolean(SuggestSettings.DefaultKeys.READING_ROUTING, false))
+                .setCanonicalReading(canonicalReading)
+                .setCollapseDuplicates(suggestSettings.getAsBoolean(SuggestSettings.DefaultKeys.COLLAPSE_DUPLICATES, false))
+                .setShortPrefixTable(shortPrefixTable).setNegativeResultCache(negativeResultCache)
+                .setSessionCache(sessionCache).setExecutor(threadPool).setRankModeAvailable(this::isRankModeAvailable);
+    }
+
+    /**
+     * Returns true if the search index stores the score rank mode sorts on. Checked once per search index.
+     */
+    public boolean isRankModeAvailable() {
+        Boolean available = rankModeAvailable;
+        if (available == null) {
+            available = SuggestUtil.isScoreSortedIndex(client, getSearchAlias(index));
+            rankModeAvailable = available;
+        }
+        return available;
+    }
+
+    /**
+     * Returns true if the update index still holds legacy ids. Checked once per update index.
+     */
+    public boolean isLegacyIdIndex() {
+        Boolean legacy = legacyIdIndex;
+        if (legacy == null) {
+            legacy = SuggestUtil.isLegacyIdIndex(client, getUpdateAlias(index), type);
+            legacyIdIndex = legacy;
+        }
+        return legacy;
     }
 
     public PopularWordsRequestBuilder popularWords() {
-        return new PopularWordsRequestBuilder(client).setIndex(getSearchAlias(index)).setType(type);
+        return new PopularWordsRequestBuilder(client).setIndex(getSearchAlias(index)).setType(type).setPool(popularWordsPool);
     }
 
     public RefreshResponse refresh() {
-        return client.admin().indices().prepareRefresh().execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+        final RefreshResponse response = client.admin().indices().prepareRefresh().execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+        if (shortPrefixTable != null) {
+            shortPrefixTable.refreshed();
+        }
+        if (negativeResultCache != null) {
+            negativeResultCache.refreshed();
+        }
+        if (sessionCache != null) {
+            sessionCache.clear();
+        }
+        return response;
     }
 
     public void shutdown() {
@@ -84,14 +171,16 @@ public class Suggester {
                     client.admin().indices().prepareExists(getSearchAlias(index)).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
             if (!response.isExists()) {
 
-                final String mappingSource = getDefaultMappings();
-                final String settingsSource = getDefaultIndexSettings();
-                final String indexName = createIndexName(index);
+                final String mappingSource =
+                        SuggestUtil.getMappings(suggestSettings.getAsBoolean(SuggestSettings.DefaultKeys.READING_ROUTING, false));
+                final String settingsSource = SuggestUtil.getDefaultIndexSettings();
+                final String indexName = SuggestUtil.createIndexName(index);
                 client.admin().indices().prepareCreate(indexName).setSettings(settingsSource.toString(), XContentType.JSON)
                         .addMapping(type, mappingSource, XContentType.JSON).addAlias(new Alias(getSearchAlias(index)))
                         .addAlias(new Alias(getUpdateAlias(index))).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
 
                 client.admin().cluster().prepareHealth().setWaitForYellowStatus().execute().actionGet(SuggestConstants.ACTION_TIMEOUT * 10);
+                legacyIdIndex = null;
                 created = true;
             }
             return created;
@@ -101,6 +190,10 @@ public class Suggester {
     }
 
     public void createNextIndex() {
+        createNextIndex(false);
+    }
+
+    public void createNextIndex(final boolean migrate) {
         try {
             final List<String> prevIndices = new ArrayList<>();
             final IndicesExistsResponse response =
@@ -111,9 +204,10 @@ public class Suggester {
                 getAliasesResponse.getAliases().keysIt().forEachRemaining(prevIndices::add);
             }
 
-            final String mappingSource = getDefaultMappings();
-            final String settingsSource = getDefaultIndexSettings();
-            final String indexName = createIndexName(index);
+            final String mappingSource =
+                    SuggestUtil.getMappings(suggestSettings.getAsBoolean(SuggestSettings.DefaultKeys.READING_ROUTING, false));
+            final String settingsSource = SuggestUtil.getDefaultIndexSettings();
+            final String indexName = SuggestUtil.createIndexName(index);
             CreateIndexResponse createIndexResponse =
                     client.admin().indices().prepareCreate(indexName).setSettings(settingsSource.toString(), XContentType.JSON)
                             .addMapping(type, mappingSource, XContentType.JSON).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
@@ -128,11 +222,114 @@ public class Suggester {
                 aliasesRequestBuilder.removeAlias(prevIndex, getUpdateAlias(index));
             }
             aliasesRequestBuilder.execute().actionGet();
+            legacyIdIndex = null;
+
+            if (migrate) {
+                for (final String prevIndex : prevIndices) {
+                    migrateIndex(prevIndex, indexName);
+                }
+                client.admin().indices().prepareRefresh(indexName).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+            }
         } catch (final Exception e) {
             throw new SuggesterException("Failed to create index.", e);
         }
     }
 
+    protected void migrateIndex(final String fromIndex, final String toIndex) {
+        SearchResponse response =
+                client.prepareSearch(fromIndex).setTypes(type).setQuery(QueryBuilders.matchAllQuery()).setSize(500)
+                        .setScroll(TimeValue.timeValueMinutes(1)).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+        String scrollId = response.getScrollId();
+        final boolean readingRouting = suggestSettings.getAsBoolean(SuggestSettings.DefaultKeys.READING_ROUTING, false);
+        final boolean canonicalReading = suggestSettings.getAsBoolean(SuggestSettings.DefaultKeys.CANONICAL_READING, false);
+        try {
+            while (response.getHits().getHits().length > 0) {
+                final List<SuggestItem> items = new ArrayList<>(response.getHits().getHits().length);
+                for (final SearchHit hit : response.getHits().getHits()) {
+                    try {
+                        items.add(SuggestItem.parseSource(hit.getSourceAsMap()));
+                    } catch (final RuntimeException e) {
+                        logger.warn("Skipped a malformed document " + hit.getId() + " of " + fromIndex + ".", e);
+                    }
+                }
+                if (!items.isEmpty()) {
+                    migrateItems(toIndex, items, readingRouting, canonicalReading);
+                }
+
+                response =
+                        client.prepareSearchScroll(scrollId).setScroll(TimeValue.timeValueMinutes(1)).execute()
+                                .actionGet(SuggestConstants.ACTION_TIMEOUT);
+                scrollId = response.getScrollId();
+            }
+        } finally {
+            client.prepareClearScroll().addScrollId(scrollId).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+        }
+    }
+
+    /**
+     * The update alias already points to the new index, so words may have been written to it since. Such a document is not
+     * overwritten, the migrated frequencies are added to it instead.
+     */
+    protected void migrateItems(final String toIndex, final List<SuggestItem> items, final boolean readingRouting,
+            final boolean canonicalReading) {
+        final String[] ids = items.stream().map(SuggestItem::getId).toArray(n -> new String[n]);
+        final String[] routings = new String[ids.length];
+        if (readingRouting) {
+            final Map<String, MultiGetItemResponse> storedDocuments = SuggestUtil.getStoredDocuments(client, toIndex, type, ids, false);
+            for (int i = 0; i < ids.length; i++) {
+                final MultiGetItemResponse stored = storedDocuments.get(ids[i]);
+                if (!stored.isFailed() && stored.getResponse().isExists()) {
+                    routings[i] = SuggestUtil.getStoredRouting(stored.getResponse());
+                } else {
+                    routings[i] = SuggestUtil.createRouting(items.get(i));
+                }
+            }
+        }
+
+        final BulkRequestBuilder bulkRequestBuilder = client.prepareBulk();
+        for (int i = 0; i < ids.length; i++) {
+            bulkRequestBuilder.add(new IndexRequest(toIndex, type, ids[i]).opType(DocWriteRequest.OpType.CREATE).routing(routings[i])
+                    .source(items.get(i).getSource(canonicalReading)));
+        }
+        final BulkResponse bulkResponse = bulkRequestBuilder.execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+        for (final BulkItemResponse itemResponse : bulkResponse.getItems()) {
+            if (!itemResponse.isFailed()) {
+                continue;
+            }
+            if (itemResponse.getFailure().getStatus() != RestStatus.CONFLICT) {
+                throw new SuggesterException(itemResponse.getFailureMessage());
+            }
+            final int i = itemResponse.getItemId();
+            mergeMigratedItem(toIndex, items.get(i), routings[i], canonicalReading);
+        }
+    }
+
+    protected void mergeMigratedItem(final String toIndex, final SuggestItem item, final String routing, final boolean canonicalReading) {
+        for (int retry = 0;; retry++) {
+            final GetResponse getResponse =
+                    client.prepareGet(toIndex, type, item.getId()).setRouting(routing).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+            final IndexRequestBuilder builder = client.prepareIndex(toIndex, type, item.getId()).setRouting(routing);
+            if (getResponse.isExists()) {
+                final Map<String, Object> existingSource = getResponse.getSourceAsMap();
+                final Object timestamp = existingSource.get(FieldNames.TIMESTAMP);
+                if (timestamp instanceof Number && ((Number) timestamp).longValue() > item.getTimestampMillis()) {
+                    item.setTimestampMillis(((Number) timestamp).longValue());
+                }
+                builder.setSource(item.getUpdatedSource(existingSource, canonicalReading)).setVersion(getResponse.getVersion());
+            } else {
+                builder.setSource(item.getSource(canonicalReading)).setOpType(DocWriteRequest.OpType.CREATE);
+            }
+            try {
+                builder.execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+                return;
+            } catch (final Exception e) {
+                if (!(ExceptionsHelper.unwrapCause(e) instanceof VersionConflictEngineException) || retry >= MAX_MIGRATE_RETRY) {
+                    throw e;
+                }
+            }
+        }
+    }
+
     public void switchIndex() {
         try {
             final List<String> updateIndices = new ArrayList<>();
@@ -169,11 +366,58 @@ public class Suggester {
 
             client.admin().indices().prepareAliases().removeAlias(searchIndex, searchAlias).addAlias(updateIndex, searchAlias).execute()
                     .actionGet();
+            rankModeAvailable = null;
+            legacyIdIndex = null;
+            if (shortPrefixTable != null) {
+                // rebuilt in the background by the next suggest request.
+                shortPrefixTable.invalidate();
+            }
+            if (negativeResultCache != null) {
+                negativeResultCache.invalidate();
+            }
+            if (sessionCache != null) {
+                sessionCache.clear();
+            }
+            if (popularWordsPool != null) {
+                popularWordsPool.clear();
+            }
         } catch (final Exception e) {
             throw new SuggesterException("Failed to create index.", e);
         }
     }
 
+    public void setShortPrefixTable(final ShortPrefixTable shortPrefixTable) {
+        this.shortPrefixTable = shortPrefixTable;
+    }
+
+    public void setNegativeResultCache(final NegativeResultCache negativeResultCache) {
+        this.negativeResultCache = negativeResultCache;
+    }
+
+    public NegativeResultCache getNegativeResultCache() {
+        return negativeResultCache;
+    }
+
+    public void setSessionCache(final SuggestSessionCache sessionCache) {
+        this.sessionCache = sessionCache;
+    }
+
+    public SuggestSessionCache getSessionCache() {
+        return sessionCache;
+    }
+
+    public void setPopularWordsPool(final PopularWordsPool popularWordsPool) {
+        this.popularWordsPool = popularWordsPool;
+    }
+
+    public void buildShortPrefixTable() {
+        if (shortPrefixTable == null) {
+            throw new SuggesterException("Short prefix table is not enabled.");
+        }
+        shortPrefixTable.build(client, getSearchAlias(index), type,
+                suggestSettings.getAsBoolean(SuggestSettings.DefaultKeys.CANONICAL_READING, false));
+    }
+
     public void removeDisableIndices() {
         GetIndexResponse response = client.admin().indices().prepareGetIndex().execute().actionGet();
         Stream.of(response.getIndices()).filter(this::isSuggestIndex).filter(index -> response.getAliases().get(index).isEmpty())
@@ -205,7 +449,16 @@ public class Suggester {
 
     protected SuggestIndexer createDefaultIndexer() {
         return new SuggestIndexer(client, getUpdateAlias(index), type, readingConverter, contentsReadingConverter, normalizer, analyzer,
-                suggestSettings, threadPool);
+                suggestSettings, threadPool).setWriteListener(this::onIndexWrite).setLegacyIdIndex(this::isLegacyIdIndex);
+    }
+
+    protected void onIndexWrite() {
+        if (shortPrefixTable != null) {
+            shortPrefixTable.invalidate();
+        }
+        if (negativeResultCache != null) {
+            negativeResultCache.invalidate();
+        }
     }
 
     public String getIndex() {
@@ -243,37 +496,6 @@ public class Suggester {
         return index + ".update";
     }
 
-    private String createIndexName(final String index) {
-        return index + '.' + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
-    }
-
-    private String getDefaultMappings() throws IOException {
-        final StringBuilder mappingSource = new StringBuilder();
-        try (BufferedReader br =
-                new BufferedReader(new InputStreamReader(this.getClass().getClassLoader()
-                        .getResourceAsStream("suggest_indices/suggest/mappings-default.json")))) {
-
-            String line;
-            while ((line = br.readLine()) != null) {
-                mappingSource.append(line);
-            }
-        }
-        return mappingSource.toString();
-    }
-
-    private String getDefaultIndexSettings() throws IOException {
-        final StringBuilder settingsSource = new StringBuilder();
-        try (BufferedReader br =
-                new BufferedReader(new InputStreamReader(this.getClass().getClassLoader()
-                        .getResourceAsStream("suggest_indices/suggest.json")))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                settingsSource.append(line);
-            }
-        }
-        return settingsSource.toString();
-    }
-
     private boolean isSuggestIndex(final String indexName) {
         return indexName.startsWith(index);
     }
@@ -8,6 +8,11 @@ import org.codelibs.fess.suggest.analysis.SuggestAnalyzer;
 import org.codelibs.fess.suggest.converter.ReadingConverter;
 import org.codelibs.fess.suggest.exception.SuggesterException;
 import org.codelibs.fess.suggest.normalizer.Normalizer;
+import org.codelibs.fess.suggest.request.popularwords.PopularWordsPool;
+import org.codelibs.fess.suggest.request.suggest.ElevateWordOverlay;
+import org.codelibs.fess.suggest.request.suggest.NegativeResultCache;
+import org.codelibs.fess.suggest.request.suggest.ShortPrefixTable;
+import org.codelibs.fess.suggest.request.suggest.SuggestSessionCache;
 import org.codelibs.fess.suggest.settings.SuggestSettings;
 import org.codelibs.fess.suggest.settings.SuggestSettingsBuilder;
 import org.codelibs.fess.suggest.util.SuggestUtil;
@@ -25,6 +30,24 @@ public class SuggesterBuilder {
 
     protected int threadPoolSize = Runtime.getRuntime().availableProcessors();
 
+    protected boolean elevateWordOverlay = false;
+
+    protected int shortPrefixLength = 0;
+
+    protected int shortPrefixWindowSize = 100;
+
+    protected int negativeCacheSize = 0;
+
+    protected long negativeCacheTtlMillis = 0;
+
+    protected int sessionCacheSize = 0;
+
+    protected long sessionCacheTtlMillis = 0;
+
+    protected int popularWordsPoolSize = 0;
+
+    protected long popularWordsRefreshIntervalMillis = 0;
+
     public SuggesterBuilder settings(final SuggestSettings settings) {
         this.settings = settings;
         this.settingsBuilder = null;
@@ -67,6 +90,35 @@ public class SuggesterBuilder {
         return this;
     }
 
+    public SuggesterBuilder elevateWordOverlay(final boolean elevateWordOverlay) {
+        this.elevateWordOverlay = elevateWordOverlay;
+        return this;
+    }
+
+    public SuggesterBuilder negativeResultCache(final int maxSize, final long ttlMillis) {
+        this.negativeCacheSize = maxSize;
+        this.negativeCacheTtlMillis = ttlMillis;
+        return this;
+    }
+
+    public SuggesterBuilder sessionCache(final int maxSize, final long ttlMillis) {
+        this.sessionCacheSize = maxSize;
+        this.sessionCacheTtlMillis = ttlMillis;
+        return this;
+    }
+
+    public SuggesterBuilder popularWordsPool(final int poolSize, final long refreshIntervalMillis) {
+        this.popularWordsPoolSize = poolSize;
+        this.popularWordsRefreshIntervalMillis = refreshIntervalMillis;
+        return this;
+    }
+
+    public SuggesterBuilder shortPrefixTable(final int maxPrefixLength, final int windowSize) {
+        this.shortPrefixLength = maxPrefixLength;
+        this.shortPrefixWindowSize = windowSize;
+        return this;
+    }
+
     public Suggester build(final Client client, final String id) {
         if (settings == null) {
             if (settingsBuilder == null) {
@@ -106,6 +158,21 @@ public class SuggesterBuilder {
             threadPool = Executors.newFixedThreadPool(threadPoolSize);
         }
 
-        return new Suggester(client, settings, readingConverter, contentsReadingConverter, normalizer, analyzer, threadPool);
+        final Suggester suggester =
+                new Suggester(client, settings, readingConverter, contentsReadingConverter, normalizer, analyzer, threadPool,
+                        elevateWordOverlay ? new ElevateWordOverlay(settings) : null);
+        if (shortPrefixLength > 0) {
+            suggester.setShortPrefixTable(new ShortPrefixTable(shortPrefixLength, shortPrefixWindowSize));
+        }
+        if (negativeCacheSize > 0) {
+            suggester.setNegativeResultCache(new NegativeResultCache(negativeCacheSize, negativeCacheTtlMillis));
+        }
+        if (sessionCacheSize > 0) {
+            suggester.setSessionCache(new SuggestSessionCache(sessionCacheSize, sessionCacheTtlMillis));
+        }
+        if (popularWordsPoolSize > 0) {
+            suggester.setPopularWordsPool(new PopularWordsPool(popularWordsPoolSize, popularWordsRefreshIntervalMillis));
+        }
+        return suggester;
     }
 }
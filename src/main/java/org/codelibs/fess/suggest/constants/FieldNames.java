@@ -4,7 +4,9 @@ public final class FieldNames {
     public static final String ID = "_id";
     public static final String TEXT = "text";
     public static final String READING_PREFIX = "reading_";
+    public static final String CANONICAL_READING_PREFIX = "canonical_reading_";
     public static final String SCORE = "score";
+    public static final String DEDUPE_KEY = "dedupeKey";
     public static final String QUERY_FREQ = "queryFreq";
     public static final String DOC_FREQ = "docFreq";
     public static final String USER_BOOST = "userBoost";
@@ -1,14 +1,25 @@
 package org.codelibs.fess.suggest.converter;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.ja.JapaneseTokenizer;
+import org.apache.lucene.analysis.ja.JapaneseTokenizerFactory;
+import org.apache.lucene.analysis.ja.dict.UserDictionary;
+import org.apache.lucene.analysis.ja.tokenattributes.ReadingAttribute;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.util.TokenizerFactory;
+import org.codelibs.fess.suggest.constants.SuggestConstants;
 import org.elasticsearch.common.Strings;
 
 import com.ibm.icu.text.Transliterator;
@@ -21,6 +32,11 @@ public class KatakanaConverter implements ReadingConverter {
 
     protected TokenizerFactory tokenizerFactory = null;
 
+    protected UserDictionary userDictionary = null;
+
+    // tokenizers keep per-document state, so each thread reuses its own instance over the shared dictionaries.
+    protected final ThreadLocal<Tokenizer> tokenizers = ThreadLocal.withInitial(this::createTokenizer);
+
     public KatakanaConverter() {
         // nothing
     }
@@ -33,29 +49,26 @@ public class KatakanaConverter implements ReadingConverter {
 
     @Override
     public void init() throws IOException {
-        /* TODO
         if (initialized) {
             return;
         }
 
-        if (tokenizerFactory == null) {
-            final String path = System.getProperty(SuggestConstants.USER_DICT_PATH);
-            final String encoding = System.getProperty(SuggestConstants.USER_DICT_ENCODING);
-            final Map<String, String> args = new HashMap<>();
-            args.put("mode", "normal");
-            args.put("discardPunctuation", "false");
-            if (Strings.isNullOrEmpty(path)) {
-                args.put("userDictionary", path);
+        synchronized (this) {
+            if (initialized) {
+                return;
             }
-            if (Strings.isNullOrEmpty(encoding)) {
-                args.put("userDictionaryEncoding", encoding);
+            if (tokenizerFactory == null) {
+                final String path = System.getProperty(SuggestConstants.USER_DICT_PATH);
+                if (!Strings.isNullOrEmpty(path)) {
+                    final String encoding = System.getProperty(SuggestConstants.USER_DICT_ENCODING);
+                    final Charset charset = Strings.isNullOrEmpty(encoding) ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+                    try (Reader reader = new InputStreamReader(Files.newInputStream(Paths.get(path)), charset)) {
+                        userDictionary = UserDictionary.open(reader);
+                    }
+                }
             }
-            final JapaneseTokenizerFactory japaneseTokenizerFactory = new JapaneseTokenizerFactory(args);
-            // TODO japaneseTokenizerFactory.inform(new FilesystemResourceLoader());
-            tokenizerFactory = japaneseTokenizerFactory;
+            initialized = true;
         }
-        initialized = true;
-        */
     }
 
     @Override
@@ -79,53 +92,62 @@ public class KatakanaConverter implements ReadingConverter {
             while (stream.incrementToken()) {
                 final CharTermAttribute att = stream.getAttribute(CharTermAttribute.class);
                 final String term = att.toString();
-                final int pos = inputStr.substring(offset).indexOf(term);
+                final int pos = inputStr.indexOf(term, offset) - offset;
                 if (pos > 0) {
                     final String tmp = inputStr.substring(offset, offset + pos);
-                    kanaBuf.append(transliterator.transliterate(tmp));
+                    kanaBuf.append(transliterate(tmp));
                     offset += pos;
-                } else if (pos == -1) {
+                } else if (pos < 0) {
                     continue;
                 }
 
                 String reading = getReadingFromAttribute(stream);
                 if (Strings.isNullOrEmpty(reading)) {
-                    reading = transliterator.transliterate(att.toString());
+                    reading = transliterate(att.toString());
                 }
                 kanaBuf.append(reading);
                 offset += term.length();
             }
+            stream.end();
         }
 
         return kanaBuf.toString();
     }
 
+    protected String transliterate(final String text) {
+        // ICU transliterators are not thread-safe.
+        synchronized (transliterator) {
+            return transliterator.transliterate(text);
+        }
+    }
+
     protected boolean isEnableTokenizer(final TokenizerFactory factory) {
-        //TODO return factory instanceof JapaneseTokenizerFactory;
-        return false;
+        return factory instanceof JapaneseTokenizerFactory;
     }
 
-    private TokenStream createTokenStream(final Reader rd) {
-        return null;
-        /* TODO
-        if (tokenizerFactory instanceof JapaneseTokenizerFactory) {
+    protected Tokenizer createTokenizer() {
+        if (tokenizerFactory != null) {
             return tokenizerFactory.create();
-        } else {
+        }
+        return new JapaneseTokenizer(userDictionary, false, JapaneseTokenizer.Mode.NORMAL);
+    }
+
+    private TokenStream createTokenStream(final Reader rd) {
+        if (!initialized && tokenizerFactory == null) {
             return null;
         }
-        */
+        final Tokenizer tokenizer = tokenizers.get();
+        tokenizer.setReader(rd);
+        return tokenizer;
     }
 
     protected String getReadingFromAttribute(final TokenStream stream) {
-        return null;
-        /*
-        if (tokenizerFactory instanceof JapaneseTokenizerFactory) {
+        if (stream.hasAttribute(ReadingAttribute.class)) {
             final ReadingAttribute rdAttr = stream.getAttribute(ReadingAttribute.class);
             return rdAttr.getReading();
         } else {
             return null;
         }
-        */
     }
 
-}
\ No newline at end of file
+}
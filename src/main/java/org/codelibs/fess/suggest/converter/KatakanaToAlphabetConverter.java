@@ -9,14 +9,36 @@ import java.util.Map;
 import com.ibm.icu.text.Transliterator;
 
 public class KatakanaToAlphabetConverter implements ReadingConverter {
-    private final Map<String, String[]> convertMap;
+    private static final char KANA_BASE = '\u30a1';
+
+    private static final Node[] KANA_TABLE;
+
+    static {
+        final Map<String, String[]> convertMap = generateConvertMapping();
+        final int size = convertMap.keySet().stream().flatMapToInt(String::chars).max().orElse(KANA_BASE) - KANA_BASE + 1;
+        KANA_TABLE = new Node[size];
+        convertMap.forEach((kana, alphabets) -> {
+            final int index = kana.charAt(0) - KANA_BASE;
+            if (KANA_TABLE[index] == null) {
+                KANA_TABLE[index] = new Node();
+            }
+            final Node node = KANA_TABLE[index];
+            if (kana.length() == 1) {
+                node.alphabets = alphabets;
+            } else {
+                if (node.next == null) {
+                    node.next = new String[size][];
+                }
+                node.next[kana.charAt(1) - KANA_BASE] = alphabets;
+            }
+        });
+    }
 
     protected Transliterator fullWidthHalfWidth;
 
     protected Transliterator anyLower;
 
     public KatakanaToAlphabetConverter() {
-        convertMap = generateConvertMapping();
         fullWidthHalfWidth = Transliterator.getInstance("Fullwidth-Halfwidth");
         anyLower = Transliterator.getInstance("Any-Lower");
     }
@@ -28,49 +50,95 @@ public class KatakanaToAlphabetConverter implements ReadingConverter {
 
     @Override
     public List<String> convert(final String text, final String... lang) {
-        final List<String> list = new ArrayList<>();
-
+        final int maxReadingNum = getMaxReadingNum();
         final List<StringBuilder> bufList = new ArrayList<>();
-        bufList.add(new StringBuilder());
+        bufList.add(new StringBuilder(text.length() * 2));
         for (int i = 0; i < text.length();) {
-            String[] alphabets;
-            if (i + 1 < text.length() && convertMap.get(text.substring(i, i + 2)) != null) {
-                alphabets = convertMap.get(text.substring(i, i + 2));
-                i += 2;
-            } else if (convertMap.get(text.substring(i, i + 1)) != null) {
-                alphabets = convertMap.get(text.substring(i, i + 1));
-                i++;
-            } else {
-                alphabets = new String[] { text.substring(i, i + 1) };
+            final Node node = getNode(text.charAt(i));
+            String[] alphabets = null;
+            int length = 1;
+            if (node != null) {
+                if (node.next != null && i + 1 < text.length()) {
+                    final int nextIndex = text.charAt(i + 1) - KANA_BASE;
+                    if (nextIndex >= 0 && nextIndex < node.next.length && node.next[nextIndex] != null) {
+                        alphabets = node.next[nextIndex];
+                        length = 2;
+                    }
+                }
+                if (alphabets == null) {
+                    alphabets = node.alphabets;
+                }
+            }
+            if (alphabets == null) {
+                final char c = text.charAt(i);
+                for (final StringBuilder buf : bufList) {
+                    buf.append(c);
+                }
                 i++;
+                continue;
+            }
+            i += length;
+
+            // only remember where each buffer ends when this character actually branches
+            final int size = bufList.size();
+            int[] lengths = null;
+            if (alphabets.length > 1 && size < maxReadingNum) {
+                lengths = new int[size];
+                for (int k = 0; k < size; k++) {
+                    lengths[k] = bufList.get(k).length();
+                }
             }
 
-            final List<StringBuilder> originBufList = deepCopyBufList(bufList);
-            for (int j = 0; j < alphabets.length; j++) {
-                if (j == 0) {
-                    for (final StringBuilder buf : bufList) {
-                        buf.append(alphabets[j]);
-                    }
-                } else if (bufList.size() < getMaxReadingNum()) {
-                    final List<StringBuilder> tmpBufList = deepCopyBufList(originBufList);
-                    for (final StringBuilder buf : tmpBufList) {
-                        buf.append(alphabets[j]);
+            for (final StringBuilder buf : bufList) {
+                buf.append(alphabets[0]);
+            }
+
+            if (lengths != null) {
+                for (int j = 1; j < alphabets.length && bufList.size() < maxReadingNum; j++) {
+                    for (int k = 0; k < size; k++) {
+                        final StringBuilder buf = new StringBuilder(lengths[k] + alphabets[j].length() + 8);
+                        buf.append(bufList.get(k), 0, lengths[k]).append(alphabets[j]);
+                        bufList.add(buf);
                     }
-                    bufList.addAll(tmpBufList);
                 }
             }
         }
 
+        final List<String> list = new ArrayList<>(bufList.size());
         for (final StringBuilder buf : bufList) {
-            String s = fullWidthHalfWidth.transliterate(buf.toString());
-            s = anyLower.transliterate(s);
-            list.add(s);
+            list.add(toHalfWidthLowerCase(buf));
         }
-
         return list;
     }
 
-    private Map<String, String[]> generateConvertMapping() {
+    protected String toHalfWidthLowerCase(final StringBuilder buf) {
+        for (int i = 0; i < buf.length(); i++) {
+            final char c = buf.charAt(i);
+            if (c < 0x80) {
+                if (c >= 'A' && c <= 'Z') {
+                    buf.setCharAt(i, (char) (c + 0x20));
+                }
+            } else if (c >= '\uff01' && c <= '\uff5e') {
+                buf.setCharAt(i, Character.toLowerCase((char) (c - 0xfee0)));
+            } else if (!(c >= '\u3041' && c <= '\u3096') && !(c >= '\u4e00' && c <= '\u9fff')) {
+                // rare characters keep the exact ICU behavior
+                synchronized (fullWidthHalfWidth) {
+                    return anyLower.transliterate(fullWidthHalfWidth.transliterate(buf.toString()));
+                }
+            }
+        }
+        return buf.toString();
+    }
+
+    private static Node getNode(final char c) {
+        final int index = c - KANA_BASE;
+        if (index < 0 || index >= KANA_TABLE.length) {
+            return null;
+        }
+        return KANA_TABLE[index];
+    }
+
+    static Map<String, String[]> generateConvertMapping() {
         final Map<String, String[]> map = new HashMap<>();
 
         map.put("ア", new String[] { "a" });
@@ -227,10 +295,9 @@ public class KatakanaToAlphabetConverter implements ReadingConverter {
         return map;
     }
 
-    private List<StringBuilder> deepCopyBufList(final List<StringBuilder> bufList) {
-        final List<StringBuilder> list = new ArrayList<>();
-        bufList.forEach(buf -> list.add(new StringBuilder(buf.toString())));
-        return list;
-    }
+    private static class Node {
+        private String[] alphabets;
 
-}
\ No newline at end of file
+        private String[][] next;
+    }
+}
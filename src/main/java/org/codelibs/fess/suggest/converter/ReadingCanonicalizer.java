@@ -0,0 +1,181 @@
+package org.codelibs.fess.suggest.converter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Maps every reading variant (kana, Hepburn or Kunrei romaji) to one deterministic romaji key.
+ */
+public final class ReadingCanonicalizer {
+    private static final Map<String, String> KANA_MAP = new HashMap<>();
+
+    private static final String[][] ROMAJI_RULES = { { "shi", "si" }, { "chi", "ti" }, { "tsu", "tu" }, { "fyu", "hyu" }, { "fu", "hu" },
+            { "jy", "zy" }, { "ji", "zi" }, { "j", "zy" }, { "sh", "sy" }, { "ch", "ty" } };
+
+    // a sokuon doubles the consonant that follows it, as in Kunrei romaji.
+    private static final Pattern SOKUON_PATTERN = Pattern.compile("ッ([bcdfghjklmpqrstvwxz])");
+
+    private static final String SOKUON = "xtu";
+
+    private static final String SYLLABIC_N = "n'";
+
+    private static final String[][] PARTIAL_RULES = { { "sh", "s" }, { "ch", "t" }, { "ts", "t" }, { "fy", "hy" }, { "c", "t" },
+            { "j", "z" } };
+
+    static {
+        KatakanaToAlphabetConverter.generateConvertMapping().forEach((kana, alphabets) -> KANA_MAP.put(kana, alphabets[0]));
+    }
+
+    private ReadingCanonicalizer() {
+    }
+
+    public static String canonicalize(final String reading) {
+        final StringBuilder buf = new StringBuilder(reading.length() * 2);
+        for (int i = 0; i < reading.length();) {
+            final char c1 = toKatakana(reading.charAt(i));
+            if (c1 == 'ッ') {
+                buf.append(c1);
+                i++;
+                continue;
+            }
+            if (c1 == 'ン') {
+                buf.append(SYLLABIC_N);
+                i++;
+                continue;
+            }
+            if (i + 1 < reading.length()) {
+                final String alphabet = KANA_MAP.get(new String(new char[] { c1, toKatakana(reading.charAt(i + 1)) }));
+                if (alphabet != null) {
+                    buf.append(alphabet);
+                    i += 2;
+                    continue;
+                }
+            }
+            final String alphabet = KANA_MAP.get(String.valueOf(c1));
+            if (alphabet != null) {
+                buf.append(alphabet);
+            } else if (c1 >= '！' && c1 <= '～') {
+                buf.append(Character.toLowerCase((char) (c1 - 0xFEE0)));
+            } else {
+                buf.append(Character.toLowerCase(c1));
+            }
+            i++;
+        }
+
+        String canonical = buf.toString();
+        for (final String[] rule : ROMAJI_RULES) {
+            canonical = canonical.replace(rule[0], rule[1]);
+        }
+        canonical = SOKUON_PATTERN.matcher(canonical).replaceAll("$1$1").replace("ッ", SOKUON);
+        return canonicalizeSyllabicN(canonical);
+    }
+
+    /**
+     * Writes the syllabic n as "n'", so that readings such as "kon'na" and "kona" stay distinct. A romaji n is syllabic unless a
+     * vowel or y follows it, and "nn" is a single syllabic n unless a vowel or y follows it.
+     */
+    private static String canonicalizeSyllabicN(final String romaji) {
+        if (romaji.indexOf('n') < 0) {
+            return romaji;
+        }
+        final StringBuilder buf = new StringBuilder(romaji.length() + 4);
+        for (int i = 0; i < romaji.length(); i++) {
+            final char c = romaji.charAt(i);
+            if (c != 'n') {
+                buf.append(c);
+                continue;
+            }
+            final char next = charAt(romaji, i + 1);
+            if (next == '\'') {
+                buf.append(SYLLABIC_N);
+                i++;
+            } else if (isVowelOrY(next)) {
+                buf.append(c);
+            } else {
+                buf.append(SYLLABIC_N);
+                if (next == 'n' && !isVowelOrY(charAt(romaji, i + 2))) {
+                    i++;
+                }
+            }
+        }
+        return buf.toString();
+    }
+
+    public static List<String> canonicalizePrefix(final String reading) {
+        final String lower = canonicalizeTail(reading);
+        for (final String[] rule : PARTIAL_RULES) {
+            if (lower.endsWith(rule[0])) {
+                final String head = canonicalize(lower.substring(0, lower.length() - rule[0].length()));
+                final List<String> list = new ArrayList<>(1);
+                list.add(head + rule[1]);
+                return list;
+            }
+        }
+        final List<String> list = new ArrayList<>(2);
+        if (lower.endsWith("f")) {
+            final String head = canonicalize(lower.substring(0, lower.length() - 1));
+            list.add(head + "h");
+            list.add(head + "f");
+        } else if (lower.endsWith("n") && countTrailing(lower, 'n') % 2 == 1) {
+            // a last single n may still become a syllabic n or the start of a na row syllable.
+            list.add(canonicalize(lower.substring(0, lower.length() - 1)) + "n");
+        } else {
+            list.add(canonicalize(reading));
+        }
+        return list;
+    }
+
+    public static Set<String> canonicalize(final Collection<String> readings, final boolean prefix) {
+        final Set<String> keys = new LinkedHashSet<>();
+        for (final String reading : readings) {
+            if (prefix) {
+                keys.addAll(canonicalizePrefix(reading));
+            } else {
+                keys.add(canonicalize(reading));
+            }
+        }
+        return keys;
+    }
+
+    private static String canonicalizeTail(final String reading) {
+        final StringBuilder buf = new StringBuilder(reading.length());
+        for (int i = 0; i < reading.length(); i++) {
+            final char c = reading.charAt(i);
+            if (c >= '！' && c <= '～') {
+                buf.append(Character.toLowerCase((char) (c - 0xFEE0)));
+            } else {
+                buf.append(Character.toLowerCase(c));
+            }
+        }
+        return buf.toString();
+    }
+
+    private static int countTrailing(final String value, final char c) {
+        int count = 0;
+        for (int i = value.length() - 1; i >= 0 && value.charAt(i) == c; i--) {
+            count++;
+        }
+        return count;
+    }
+
+    private static char charAt(final String value, final int index) {
+        return index < value.length() ? value.charAt(index) : 0;
+    }
+
+    private static boolean isVowelOrY(final char c) {
+        return c == 'a' || c == 'i' || c == 'u' || c == 'e' || c == 'o' || c == 'y';
+    }
+
+    private static char toKatakana(final char c) {
+        if (c >= 'ぁ' && c <= 'ゖ') {
+            return (char) (c + 0x60);
+        }
+        return c;
+    }
+}
@@ -6,6 +6,8 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,12 +16,29 @@ import java.util.stream.Stream;
 import org.codelibs.core.lang.StringUtil;
 import org.codelibs.fess.suggest.constants.FieldNames;
 import org.codelibs.fess.suggest.constants.SuggestConstants;
+import org.codelibs.fess.suggest.converter.ReadingCanonicalizer;
+import org.codelibs.fess.suggest.util.BadWordMatcher;
 import org.codelibs.fess.suggest.util.SuggestUtil;
 import org.elasticsearch.common.Nullable;
 
+/**
+ * The arrays given to the constructor and the setters are kept as they are, so that items of one document can share them, and
+ * must not be changed afterwards. The getters return copies.
+ */
 public class SuggestItem implements Serializable {
 
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
+
+    private static final String[] EMPTY_STRINGS = new String[0];
+
+    private static final String[] DEFAULT_ROLES = new String[] { SuggestConstants.DEFAULT_ROLE };
+
+    // timestamp of an item whose timestamp was set to null
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private static final Kind[] KIND_VALUES = Kind.values();
+
+    private static final Kind[][] KIND_TABLE = createKindTable();
 
     public enum Kind {
         DOCUMENT("document"), QUERY("query"), USER("user");
@@ -38,7 +57,7 @@ public class SuggestItem implements Serializable {
 
     private String text;
 
-    private LocalDateTime timestamp;
+    private long timestamp;
 
     private long queryFreq;
 
@@ -56,13 +75,13 @@ public class SuggestItem implements Serializable {
 
     private String[] languages;
 
-    private Kind[] kinds;
+    private int kinds;
 
     private Map<String, Object> emptySource;
 
     private String id;
 
-    private SuggestItem() {
+    SuggestItem() {
     }
 
     public SuggestItem(final String[] text, final String[][] readings, final String[] fields, final long docFreq, final long queryFreq,
@@ -70,19 +89,12 @@ public class SuggestItem implements Serializable {
             final Kind kind) {
         this.text = String.join(SuggestConstants.TEXT_SEPARATOR, text);
         this.readings = readings;
-        this.fields = fields != null ? fields : new String[] {};
-        this.tags = tags != null ? tags : new String[] {};
-
-        if (roles == null || roles.length == 0) {
-            this.roles = new String[] { SuggestConstants.DEFAULT_ROLE };
-        } else {
-            this.roles = new String[roles.length];
-            System.arraycopy(roles, 0, this.roles, 0, roles.length);
-        }
+        this.fields = emptyIfNull(fields);
+        this.tags = emptyIfNull(tags);
+        this.roles = roles == null || roles.length == 0 ? DEFAULT_ROLES : roles;
+        this.languages = emptyIfNull(languages);
 
-        this.languages = languages != null ? languages : new String[] {};
-
-        this.kinds = new Kind[] { kind };
+        this.kinds = toMask(kind);
         if (userBoost > 1) {
             this.userBoost = userBoost;
         } else {
@@ -90,9 +102,7 @@ public class SuggestItem implements Serializable {
         }
         this.docFreq = docFreq;
         this.queryFreq = queryFreq;
-        this.timestamp = LocalDateTime.now();
-        this.emptySource = createEmptyMap();
-        this.id = SuggestUtil.createSuggestTextId(this.text);
+        this.timestamp = System.currentTimeMillis();
     }
 
     public String getText() {
@@ -100,27 +110,90 @@ public class SuggestItem implements Serializable {
     }
 
     public String[][] getReadings() {
-        return readings;
+        return copyOf(readings);
     }
 
     public String[] getTags() {
-        return tags;
+        return copyOf(tags);
     }
 
     public String[] getRoles() {
-        return roles;
+        return copyOf(roles);
     }
 
     public String[] getLanguages() {
-        return languages;
+        return copyOf(languages);
     }
 
     public String[] getFields() {
-        return fields;
+        return copyOf(fields);
     }
 
     public Kind[] getKinds() {
-        return kinds;
+        return KIND_TABLE[kinds].clone();
+    }
+
+    public int getReadingNum() {
+        return readings.length;
+    }
+
+    /**
+     * Returns a read only view of the readings of the given term without copying them.
+     */
+    public List<String> getReadingList(final int index) {
+        final String[] values = readings[index];
+        return values == null ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(values));
+    }
+
+    public boolean hasKind(final Kind kind) {
+        return (kinds & toMask(kind)) != 0;
+    }
+
+    public boolean hasOnlyKind(final Kind kind) {
+        return kinds == toMask(kind);
+    }
+
+    public boolean hasAnyKind(final Collection<String> values) {
+        for (final Kind kind : KIND_TABLE[kinds]) {
+            if (values.contains(kind.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean hasAnyTag(final Collection<String> values) {
+        return containsAny(tags, values);
+    }
+
+    public boolean hasAnyRole(final Collection<String> values) {
+        return containsAny(roles, values);
+    }
+
+    public boolean hasAnyField(final Collection<String> values) {
+        return containsAny(fields, values);
+    }
+
+    // accessors without copies for the codec.
+
+    String[][] readings() {
+        return readings;
+    }
+
+    String[] fields() {
+        return fields;
+    }
+
+    String[] tags() {
+        return tags;
+    }
+
+    String[] roles() {
+        return roles;
+    }
+
+    String[] languages() {
+        return languages;
     }
 
     public long getQueryFreq() {
@@ -136,6 +209,13 @@ public class SuggestItem implements Serializable {
     }
 
     public LocalDateTime getTimestamp() {
+        if (timestamp == NO_TIMESTAMP) {
+            return null;
+        }
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+    }
+
+    public long getTimestampMillis() {
         return timestamp;
     }
 
@@ -144,6 +224,10 @@ public class SuggestItem implements Serializable {
     }
 
     public void setTimestamp(final LocalDateTime timestamp) {
+        this.timestamp = timestamp != null ? timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : NO_TIMESTAMP;
+    }
+
+    public void setTimestampMillis(final long timestamp) {
         this.timestamp = timestamp;
     }
 
@@ -164,23 +248,31 @@ public class SuggestItem implements Serializable {
     }
 
     public void setFields(final String[] fields) {
-        this.fields = fields;
+        this.fields = emptyIfNull(fields);
     }
 
     public void setTags(final String[] tags) {
-        this.tags = tags;
+        this.tags = emptyIfNull(tags);
     }
 
     public void setRoles(final String[] roles) {
-        this.roles = roles;
+        this.roles = emptyIfNull(roles);
     }
 
     public void setLanguages(final String[] languages) {
-        this.languages = languages;
+        this.languages = emptyIfNull(languages);
     }
 
     public void setKinds(final Kind[] kinds) {
-        this.kinds = kinds;
+        this.kinds = toMask(kinds);
+    }
+
+    int getKindsMask() {
+        return kinds;
+    }
+
+    void setKindsMask(final int kinds) {
+        this.kinds = kinds & (KIND_TABLE.length - 1);
     }
 
     public void setEmptySource(final Map<String, Object> emptySource) {
@@ -192,15 +284,20 @@ public class SuggestItem implements Serializable {
     }
 
     public Map<String, Object> toEmptyMap() {
+        if (emptySource == null) {
+            emptySource = createEmptyMap();
+        }
         return emptySource;
     }
 
     protected Map<String, Object> createEmptyMap() {
         final Map<String, Object> map = new HashMap<>();
         map.put(FieldNames.TEXT, StringUtil.EMPTY);
+        map.put(FieldNames.DEDUPE_KEY, StringUtil.EMPTY);
 
         for (int i = 0; i < readings.length; i++) {
             map.put(FieldNames.READING_PREFIX + i, new String[] {});
+            map.put(FieldNames.CANONICAL_READING_PREFIX + i, new String[] {});
         }
 
         map.put(FieldNames.FIELDS, new String[] {});
@@ -217,30 +314,56 @@ public class SuggestItem implements Serializable {
     }
 
     public String getId() {
+        if (id == null) {
+            id = SuggestUtil.createSuggestTextId(text);
+        }
         return id;
     }
 
     public Map<String, Object> getSource() {
+        return getSource(false);
+    }
+
+    /**
+     * @param canonicalReading true to add the canonical_reading_N keys searched by the canonicalReading setting
+     */
+    public Map<String, Object> getSource(final boolean canonicalReading) {
         final Map<String, Object> map = new HashMap<>();
         map.put(FieldNames.TEXT, text);
+        map.put(FieldNames.DEDUPE_KEY, createDedupeKey(text));
 
         for (int i = 0; i < readings.length; i++) {
-            map.put(FieldNames.READING_PREFIX + i, readings[i]);
+            map.put(FieldNames.READING_PREFIX + i, copyOf(readings[i]));
+            if (canonicalReading) {
+                map.put(FieldNames.CANONICAL_READING_PREFIX + i, createCanonicalReadings(Arrays.asList(readings[i])));
+            }
         }
 
-        map.put(FieldNames.FIELDS, fields);
-        map.put(FieldNames.TAGS, tags);
-        map.put(FieldNames.ROLES, roles);
-        map.put(FieldNames.LANGUAGES, languages);
-        map.put(FieldNames.KINDS, Stream.of(kinds).map(kind -> kind.toString()).toArray());
+        map.put(FieldNames.FIELDS, copyOf(fields));
+        map.put(FieldNames.TAGS, copyOf(tags));
+        map.put(FieldNames.ROLES, copyOf(roles));
+        map.put(FieldNames.LANGUAGES, copyOf(languages));
+        map.put(FieldNames.KINDS, Stream.of(KIND_TABLE[kinds]).map(kind -> kind.toString()).toArray());
         map.put(FieldNames.QUERY_FREQ, queryFreq);
         map.put(FieldNames.DOC_FREQ, docFreq);
         map.put(FieldNames.USER_BOOST, userBoost);
-        map.put(FieldNames.SCORE, (queryFreq + docFreq) * userBoost);
-        map.put(FieldNames.TIMESTAMP, timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        map.put(FieldNames.SCORE, calculateScore(docFreq, queryFreq, userBoost));
+        map.put(FieldNames.TIMESTAMP, getTimestampValue());
         return map;
     }
 
+    public static double calculateScore(final long docFreq, final long queryFreq, final float userBoost) {
+        return Math.log10(docFreq + 2) * Math.log10(queryFreq + 2) * userBoost;
+    }
+
+    public static String createDedupeKey(final String text) {
+        return text.replace(" ", "");
+    }
+
+    public static String[] createCanonicalReadings(final Collection<String> readings) {
+        return ReadingCanonicalizer.canonicalize(readings, false).toArray(new String[0]);
+    }
+
     public static SuggestItem parseSource(final Map<String, Object> source) {
         final String text = source.get(FieldNames.TEXT).toString();
         final List<String[]> readings = new ArrayList<>();
@@ -266,34 +389,34 @@ public class SuggestItem implements Serializable {
         final SuggestItem item = new SuggestItem();
         item.text = text;
         item.readings = readings.toArray(new String[readings.size()][]);
-        item.fields = fields.toArray(new String[fields.size()]);
+        item.fields = toInternedArray(fields);
         item.docFreq = docFreq;
         item.queryFreq = queryFreq;
         item.userBoost = userBoost;
-        item.tags = tags.toArray(new String[tags.size()]);
-        item.roles = roles.toArray(new String[roles.size()]);
-        item.languages = languages.toArray(new String[languages.size()]);
-
-        item.kinds = new Kind[kinds.size()];
-        for (int i = 0; i < kinds.size(); i++) {
-            final String kind = kinds.get(i);
-            if (kind.equals(Kind.DOCUMENT.toString())) {
-                item.kinds[i] = Kind.DOCUMENT;
-            } else if (kind.equals(Kind.QUERY.toString())) {
-                item.kinds[i] = Kind.QUERY;
-            } else if (kind.equals(Kind.USER.toString())) {
-                item.kinds[i] = Kind.USER;
+        item.tags = toInternedArray(tags);
+        item.roles = toInternedArray(roles);
+        item.languages = toInternedArray(languages);
+
+        for (final String kind : kinds) {
+            for (final Kind value : KIND_VALUES) {
+                if (kind.equals(value.toString())) {
+                    item.kinds |= toMask(value);
+                }
             }
         }
 
-        item.id = SuggestUtil.createSuggestTextId(item.text);
-        item.timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+        item.timestamp = timestamp;
         return item;
     }
 
     public Map<String, Object> getUpdatedSource(final Map<String, Object> existingSource) {
+        return getUpdatedSource(existingSource, false);
+    }
+
+    public Map<String, Object> getUpdatedSource(final Map<String, Object> existingSource, final boolean canonicalReading) {
         final Map<String, Object> map = new HashMap<>();
         map.put(FieldNames.TEXT, text);
+        map.put(FieldNames.DEDUPE_KEY, createDedupeKey(text));
 
         for (int i = 0; i < readings.length; i++) {
             final Object readingObj = existingSource.get(FieldNames.READING_PREFIX + i);
@@ -302,8 +425,14 @@ public class SuggestItem implements Serializable {
                 final List<String> existingValues = (List<String>) readingObj;
                 concatValues(existingValues, readings[i]);
                 map.put(FieldNames.READING_PREFIX + i, existingValues);
+                if (canonicalReading) {
+                    map.put(FieldNames.CANONICAL_READING_PREFIX + i, createCanonicalReadings(existingValues));
+                }
             } else {
-                map.put(FieldNames.READING_PREFIX + i, readings[i]);
+                map.put(FieldNames.READING_PREFIX + i, copyOf(readings[i]));
+                if (canonicalReading) {
+                    map.put(FieldNames.CANONICAL_READING_PREFIX + i, createCanonicalReadings(Arrays.asList(readings[i])));
+                }
             }
         }
 
@@ -314,7 +443,7 @@ public class SuggestItem implements Serializable {
             concatValues(existingValues, fields);
             map.put(FieldNames.FIELDS, existingValues);
         } else {
-            map.put(FieldNames.FIELDS, fields);
+            map.put(FieldNames.FIELDS, copyOf(fields));
         }
 
         final Object tagsObj = existingSource.get(FieldNames.TAGS);
@@ -324,7 +453,7 @@ public class SuggestItem implements Serializable {
             concatValues(existingValues, tags);
             map.put(FieldNames.TAGS, existingValues);
         } else {
-            map.put(FieldNames.TAGS, tags);
+            map.put(FieldNames.TAGS, copyOf(tags));
         }
 
         final Object rolesObj = existingSource.get(FieldNames.ROLES);
@@ -334,7 +463,7 @@ public class SuggestItem implements Serializable {
             concatValues(existingValues, roles);
             map.put(FieldNames.ROLES, existingValues);
         } else {
-            map.put(FieldNames.ROLES, roles);
+            map.put(FieldNames.ROLES, copyOf(roles));
         }
 
         final Object langsObj = existingSource.get(FieldNames.LANGUAGES);
@@ -344,17 +473,17 @@ public class SuggestItem implements Serializable {
             concatValues(existingValues, languages);
             map.put(FieldNames.LANGUAGES, existingValues);
         } else {
-            map.put(FieldNames.LANGUAGES, languages);
+            map.put(FieldNames.LANGUAGES, copyOf(languages));
         }
 
         final Object kindsObj = existingSource.get(FieldNames.KINDS);
         if (kindsObj instanceof List) {
             @SuppressWarnings("unchecked")
             final List<String> existingFields = (List<String>) kindsObj;
-            concatValues(existingFields, Stream.of(kinds).map(kind -> kind.toString()).toArray(count -> new String[count]));
+            concatValues(existingFields, Stream.of(KIND_TABLE[kinds]).map(kind -> kind.toString()).toArray(count -> new String[count]));
             map.put(FieldNames.KINDS, existingFields);
         } else {
-            map.put(FieldNames.KINDS, Stream.of(kinds).map(kind -> kind.toString()).toArray());
+            map.put(FieldNames.KINDS, Stream.of(KIND_TABLE[kinds]).map(kind -> kind.toString()).toArray());
         }
 
         final long updatedQueryFreq;
@@ -378,11 +507,15 @@ public class SuggestItem implements Serializable {
         map.put(FieldNames.DOC_FREQ, updatedDocFreq);
 
         map.put(FieldNames.USER_BOOST, userBoost);
-        map.put(FieldNames.SCORE, (updatedQueryFreq + updatedDocFreq) * userBoost);
-        map.put(FieldNames.TIMESTAMP, timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        map.put(FieldNames.SCORE, calculateScore(updatedDocFreq, updatedQueryFreq, userBoost));
+        map.put(FieldNames.TIMESTAMP, getTimestampValue());
         return map;
     }
 
+    protected Long getTimestampValue() {
+        return timestamp != NO_TIMESTAMP ? timestamp : null;
+    }
+
     protected static <T> void concatValues(final List<T> dest, final T... newValues) {
         for (final T value : newValues) {
             if (!dest.contains(value)) {
@@ -391,96 +524,135 @@ public class SuggestItem implements Serializable {
         }
     }
 
-    protected static Kind[] concatKinds(final Kind[] kinds, final Kind... newKinds) {
-        if (kinds == null) {
-            return newKinds;
-        } else if (newKinds == null) {
-            return kinds;
+    /**
+     * Returns the values followed by the new values they do not contain, sharing an array when nothing is added.
+     */
+    protected static String[] concatValues(final String[] values, final String[] newValues) {
+        if (values.length == 0) {
+            return newValues;
         }
 
-        final List<Kind> list = new ArrayList<>(kinds.length + newKinds.length);
-        list.addAll(Arrays.asList(kinds));
-        for (final Kind kind : newKinds) {
-            if (!list.contains(kind)) {
-                list.add(kind);
+        List<String> list = null;
+        for (final String value : newValues) {
+            if (list == null) {
+                boolean exists = false;
+                for (final String v : values) {
+                    if (v.equals(value)) {
+                        exists = true;
+                        break;
+                    }
+                }
+                if (exists) {
+                    continue;
+                }
+                list = new ArrayList<>(values.length + newValues.length);
+                list.addAll(Arrays.asList(values));
+            } else if (list.contains(value)) {
+                continue;
             }
+            list.add(value);
         }
-        return list.toArray(new Kind[list.size()]);
+        return list == null ? values : list.toArray(new String[list.size()]);
     }
 
-    public static SuggestItem merge(final SuggestItem item1, final SuggestItem item2) {
-        if (!item1.getId().equals(item2.getId())) {
-            throw new IllegalArgumentException("Item id is mismatch.");
+    private static boolean containsAny(final String[] values, final Collection<String> targets) {
+        for (final String value : values) {
+            if (targets.contains(value)) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        final SuggestItem mergedItem = new SuggestItem();
-
-        mergedItem.id = item1.getId();
-        mergedItem.text = item1.getText();
+    protected static String[] emptyIfNull(final String[] values) {
+        return values == null ? EMPTY_STRINGS : values;
+    }
 
-        mergedItem.readings = new String[mergedItem.text.split(SuggestConstants.TEXT_SEPARATOR).length][];
-        for (int i = 0; i < mergedItem.readings.length; i++) {
-            final List<String> list = new ArrayList<>();
-            if (item1.getReadings().length > i) {
-                for (final String reading : item1.getReadings()[i]) {
-                    list.add(reading);
-                }
-            }
-            if (item2.getReadings().length > i) {
-                for (final String reading : item2.getReadings()[i]) {
-                    if (!list.contains(reading)) {
-                        list.add(reading);
-                    }
-                }
-            }
-            mergedItem.readings[i] = list.toArray(new String[list.size()]);
+    protected static String[] copyOf(final String[] values) {
+        if (values == null || values.length == 0) {
+            // an empty array cannot be changed, so it is shared.
+            return EMPTY_STRINGS;
         }
+        return values.clone();
+    }
 
-        final List<String> fieldList = new ArrayList<>(item1.getFields().length + item2.getFields().length);
-        for (final String field : item1.getFields()) {
-            fieldList.add(field);
+    protected static String[][] copyOf(final String[][] values) {
+        if (values == null) {
+            return null;
         }
-        for (final String field : item2.getFields()) {
-            if (!fieldList.contains(field)) {
-                fieldList.add(field);
-            }
+        final String[][] array = new String[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            array[i] = values[i] != null ? values[i].clone() : null;
         }
-        mergedItem.fields = fieldList.toArray(new String[fieldList.size()]);
+        return array;
+    }
 
-        final List<String> tagList = new ArrayList<>(item1.getTags().length + item2.getTags().length);
-        for (final String tag : item1.getTags()) {
-            tagList.add(tag);
+    protected static String[] toInternedArray(final List<String> values) {
+        if (values.isEmpty()) {
+            return EMPTY_STRINGS;
         }
-        for (final String tag : item2.getTags()) {
-            if (!tagList.contains(tag)) {
-                tagList.add(tag);
-            }
+        final String[] array = new String[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i).intern();
         }
-        mergedItem.tags = tagList.toArray(new String[tagList.size()]);
+        return array;
+    }
 
-        final List<String> langList = new ArrayList<>(item1.getLanguages().length + item2.getLanguages().length);
-        for (final String lang : item1.getLanguages()) {
-            langList.add(lang);
+    protected static int toMask(final Kind... kinds) {
+        int mask = 0;
+        if (kinds != null) {
+            for (final Kind kind : kinds) {
+                if (kind != null) {
+                    mask |= 1 << kind.ordinal();
+                }
+            }
         }
-        for (final String lang : item2.getLanguages()) {
-            if (!langList.contains(lang)) {
-                langList.add(lang);
+        return mask;
+    }
+
+    private static Kind[][] createKindTable() {
+        final Kind[][] table = new Kind[1 << KIND_VALUES.length][];
+        for (int mask = 0; mask < table.length; mask++) {
+            final List<Kind> list = new ArrayList<>(KIND_VALUES.length);
+            for (final Kind kind : KIND_VALUES) {
+                if ((mask & (1 << kind.ordinal())) != 0) {
+                    list.add(kind);
+                }
             }
+            table[mask] = list.toArray(new Kind[list.size()]);
         }
-        mergedItem.languages = langList.toArray(new String[langList.size()]);
+        return table;
+    }
 
-        final List<String> roleList = new ArrayList<>(item1.getRoles().length + item2.getRoles().length);
-        for (final String role : item1.getRoles()) {
-            roleList.add(role);
+    public static SuggestItem merge(final SuggestItem item1, final SuggestItem item2) {
+        if (!item1.getId().equals(item2.getId())) {
+            throw new IllegalArgumentException("Item id is mismatch.");
         }
-        for (final String role : item2.getRoles()) {
-            if (!roleList.contains(role)) {
-                roleList.add(role);
+
+        final SuggestItem mergedItem = new SuggestItem();
+
+        mergedItem.id = item1.getId();
+        mergedItem.text = item1.getText();
+
+        mergedItem.readings = new String[mergedItem.text.split(SuggestConstants.TEXT_SEPARATOR).length][];
+        for (int i = 0; i < mergedItem.readings.length; i++) {
+            final String[] readings1 = item1.readings.length > i ? item1.readings[i] : null;
+            final String[] readings2 = item2.readings.length > i ? item2.readings[i] : null;
+            if (readings1 == null) {
+                mergedItem.readings[i] = emptyIfNull(readings2);
+            } else if (readings2 == null) {
+                mergedItem.readings[i] = readings1;
+            } else {
+                mergedItem.readings[i] = concatValues(readings1, readings2);
             }
         }
-        mergedItem.roles = roleList.toArray(new String[roleList.size()]);
 
-        mergedItem.kinds = concatKinds(item1.kinds, item2.kinds);
+        mergedItem.fields = concatValues(item1.fields, item2.fields);
+        mergedItem.tags = concatValues(item1.tags, item2.tags);
+        mergedItem.languages = concatValues(item1.languages, item2.languages);
+        mergedItem.roles = concatValues(item1.roles, item2.roles);
+
+        mergedItem.kinds = item1.kinds | item2.kinds;
         mergedItem.timestamp = item2.timestamp;
         mergedItem.queryFreq = item1.queryFreq + item2.queryFreq;
         mergedItem.docFreq = item1.docFreq + item2.docFreq;
@@ -499,11 +671,15 @@ public class SuggestItem implements Serializable {
         return false;
     }
 
+    public boolean isBadWord(final BadWordMatcher badWordMatcher) {
+        return badWordMatcher.matches(text);
+    }
+
     @Override
     public String toString() {
-        return "SuggestItem [text=" + text + ", timestamp=" + timestamp + ", queryFreq=" + queryFreq + ", docFreq=" + docFreq
+        return "SuggestItem [text=" + text + ", timestamp=" + getTimestamp() + ", queryFreq=" + queryFreq + ", docFreq=" + docFreq
                 + ", userBoost=" + userBoost + ", readings=" + Arrays.toString(readings) + ", fields=" + Arrays.toString(fields)
                 + ", tags=" + Arrays.toString(tags) + ", roles=" + Arrays.toString(roles) + ", languages=" + Arrays.toString(languages)
-                + ", kinds=" + Arrays.toString(kinds) + ", emptySource=" + emptySource + ", id=" + id + "]";
+                + ", kinds=" + Arrays.toString(KIND_TABLE[kinds]) + ", emptySource=" + emptySource + ", id=" + id + "]";
     }
 }
@@ -0,0 +1,307 @@
+package org.codelibs.fess.suggest.entity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codelibs.fess.suggest.exception.SuggesterException;
+
+/**
+ * Versioned binary representation of {@link SuggestItem}.
+ *
+ * A block starts with a version byte and a dictionary shared by all items in the block.
+ * Tags, roles, fields and languages are written as dictionary references,
+ * strings are length-prefixed UTF-8 and numbers are varints.
+ */
+public final class SuggestItemCodec {
+    public static final byte VERSION = 1;
+
+    private static final String[] EMPTY_STRINGS = new String[0];
+
+    private static final int MAX_COUNT = 1 << 24;
+
+    // text, timestamp, frequencies, boost, kinds, readings and four reference lists
+    private static final int MIN_ITEM_BYTES = 14;
+
+    private SuggestItemCodec() {
+    }
+
+    public static byte[] encode(final SuggestItem item) {
+        return encode(Collections.singletonList(item));
+    }
+
+    public static byte[] encode(final List<SuggestItem> items) {
+        final Output out = new Output(64 * items.size() + 16);
+        write(out, items);
+        return out.toByteArray();
+    }
+
+    public static void encode(final List<SuggestItem> items, final OutputStream stream) throws IOException {
+        final Output out = new Output(64 * items.size() + 16);
+        write(out, items);
+        stream.write(out.buf, 0, out.size);
+    }
+
+    public static List<SuggestItem> decode(final byte[] bytes) {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Decodes one block starting at the buffer position.
+     * The buffer is read in place and its position is moved to the end of the block.
+     */
+    public static List<SuggestItem> decode(final ByteBuffer buffer) {
+        try {
+            final byte version = buffer.get();
+            if (version != VERSION) {
+                throw new SuggesterException("Unsupported SuggestItem codec version: " + version);
+            }
+
+            final String[] dictionary = new String[readCount(buffer, 1)];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = readString(buffer);
+            }
+
+            final int size = readCount(buffer, MIN_ITEM_BYTES);
+            final List<SuggestItem> items = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                items.add(readItem(buffer, dictionary));
+            }
+            return items;
+        } catch (final SuggesterException e) {
+            throw e;
+        } catch (final BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new SuggesterException("Corrupted SuggestItem block.", e);
+        } catch (final RuntimeException e) {
+            throw new SuggesterException("Failed to decode SuggestItem block.", e);
+        }
+    }
+
+    private static void write(final Output out, final List<SuggestItem> items) {
+        final Map<String, Integer> dictionary = new HashMap<>();
+        final List<String> dictionaryValues = new ArrayList<>();
+        for (final SuggestItem item : items) {
+            addToDictionary(dictionary, dictionaryValues, item.fields());
+            addToDictionary(dictionary, dictionaryValues, item.tags());
+            addToDictionary(dictionary, dictionaryValues, item.roles());
+            addToDictionary(dictionary, dictionaryValues, item.languages());
+        }
+
+        out.writeByte(VERSION);
+        out.writeVarInt(dictionaryValues.size());
+        dictionaryValues.forEach(out::writeString);
+
+        out.writeVarInt(items.size());
+        for (final SuggestItem item : items) {
+            out.writeString(item.getText());
+            out.writeVarLong(item.getTimestampMillis());
+            out.writeVarLong(item.getQueryFreq());
+            out.writeVarLong(item.getDocFreq());
+            out.writeInt(Float.floatToIntBits(item.getUserBoost()));
+            out.writeByte(item.getKindsMask());
+
+            final String[][] readings = item.readings();
+            if (readings == null) {
+                out.writeVarInt(0);
+            } else {
+                out.writeVarInt(readings.length + 1);
+                for (final String[] reading : readings) {
+                    if (reading == null) {
+                        out.writeVarInt(0);
+                    } else {
+                        out.writeVarInt(reading.length + 1);
+                        for (final String value : reading) {
+                            out.writeString(value);
+                        }
+                    }
+                }
+            }
+
+            writeReferences(out, dictionary, item.fields());
+            writeReferences(out, dictionary, item.tags());
+            writeReferences(out, dictionary, item.roles());
+            writeReferences(out, dictionary, item.languages());
+        }
+    }
+
+    private static SuggestItem readItem(final ByteBuffer buffer, final String[] dictionary) {
+        final SuggestItem item = new SuggestItem();
+        item.setText(readString(buffer));
+        item.setTimestampMillis(readVarLong(buffer));
+        item.setQueryFreq(readVarLong(buffer));
+        item.setDocFreq(readVarLong(buffer));
+        item.setUserBoost(Float.intBitsToFloat(buffer.getInt()));
+        item.setKindsMask(buffer.get());
+
+        final int readingNum = readCount(buffer, 1);
+        if (readingNum > 0) {
+            final String[][] readings = new String[readingNum - 1][];
+            for (int i = 0; i < readings.length; i++) {
+                final int valueNum = readCount(buffer, 1);
+                if (valueNum > 0) {
+                    readings[i] = new String[valueNum - 1];
+                    for (int j = 0; j < readings[i].length; j++) {
+                        readings[i][j] = readString(buffer);
+                    }
+                }
+            }
+            item.setReadings(readings);
+        }
+
+        item.setFields(readReferences(buffer, dictionary));
+        item.setTags(readReferences(buffer, dictionary));
+        item.setRoles(readReferences(buffer, dictionary));
+        item.setLanguages(readReferences(buffer, dictionary));
+        return item;
+    }
+
+    private static void addToDictionary(final Map<String, Integer> dictionary, final List<String> values, final String[] array) {
+        if (array == null) {
+            return;
+        }
+        for (final String value : array) {
+            if (!dictionary.containsKey(value)) {
+                dictionary.put(value, values.size());
+                values.add(value);
+            }
+        }
+    }
+
+    private static void writeReferences(final Output out, final Map<String, Integer> dictionary, final String[] array) {
+        if (array == null) {
+            out.writeVarInt(0);
+            return;
+        }
+        out.writeVarInt(array.length);
+        for (final String value : array) {
+            out.writeVarInt(dictionary.get(value));
+        }
+    }
+
+    private static String[] readReferences(final ByteBuffer buffer, final String[] dictionary) {
+        final int size = readCount(buffer, 1);
+        if (size == 0) {
+            return EMPTY_STRINGS;
+        }
+        final String[] array = new String[size];
+        for (int i = 0; i < size; i++) {
+            final int index = readVarInt(buffer);
+            if (index < 0 || index >= dictionary.length) {
+                throw new SuggesterException("Invalid dictionary reference: " + index);
+            }
+            array[i] = dictionary[index];
+        }
+        return array;
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final int length = readVarInt(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new SuggesterException("Invalid string length: " + length);
+        }
+        final String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            final byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    /**
+     * Reads a count and checks it against the remaining bytes, each counted element taking at least minBytes.
+     */
+    private static int readCount(final ByteBuffer buffer, final int minBytes) {
+        final long count = readVarLong(buffer);
+        if (count < 0 || count > MAX_COUNT || count * minBytes > buffer.remaining()) {
+            throw new SuggesterException("Invalid count: " + count);
+        }
+        return (int) count;
+    }
+
+    private static int readVarInt(final ByteBuffer buffer) {
+        final long value = readVarLong(buffer);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new SuggesterException("Invalid varint: " + value);
+        }
+        return (int) value;
+    }
+
+    private static long readVarLong(final ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SuggesterException("Malformed varint.");
+    }
+
+    private static class Output {
+        private byte[] buf;
+
+        private int size;
+
+        Output(final int capacity) {
+            buf = new byte[capacity];
+        }
+
+        void writeByte(final int b) {
+            ensureCapacity(1);
+            buf[size++] = (byte) b;
+        }
+
+        void writeInt(final int v) {
+            ensureCapacity(4);
+            buf[size++] = (byte) (v >>> 24);
+            buf[size++] = (byte) (v >>> 16);
+            buf[size++] = (byte) (v >>> 8);
+            buf[size++] = (byte) v;
+        }
+
+        void writeVarInt(final int v) {
+            writeVarLong(v & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(final long v) {
+            ensureCapacity(10);
+            long value = v;
+            while ((value & ~0x7FL) != 0) {
+                buf[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[size++] = (byte) value;
+        }
+
+        void writeString(final String value) {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buf, size, bytes.length);
+            size += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, size);
+        }
+
+        private void ensureCapacity(final int length) {
+            if (size + length > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + length));
+            }
+        }
+    }
+}
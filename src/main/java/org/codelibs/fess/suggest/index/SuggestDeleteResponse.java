@@ -3,7 +3,9 @@ package org.codelibs.fess.suggest.index;
 import java.util.ArrayList;
 import java.util.List;
 
-public class SuggestDeleteResponse {
+import org.codelibs.fess.suggest.request.Response;
+
+public class SuggestDeleteResponse implements Response {
     protected final List<Throwable> errors = new ArrayList<>();
     protected final long took;
 
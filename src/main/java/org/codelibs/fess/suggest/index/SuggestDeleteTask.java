@@ -0,0 +1,131 @@
+package org.codelibs.fess.suggest.index;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.codelibs.fess.suggest.concurrent.Deferred;
+import org.codelibs.fess.suggest.constants.SuggestConstants;
+import org.codelibs.fess.suggest.util.SuggestUtil;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.index.reindex.BulkByScrollResponse;
+import org.elasticsearch.index.reindex.BulkByScrollTask;
+import org.elasticsearch.index.reindex.DeleteByQueryAction;
+import org.elasticsearch.index.reindex.DeleteByQueryRequestBuilder;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.tasks.TaskId;
+import org.elasticsearch.tasks.TaskInfo;
+
+public class SuggestDeleteTask {
+    protected static final Set<TaskId> claimedTaskIds = ConcurrentHashMap.newKeySet();
+
+    protected final Client client;
+    protected final String description;
+    protected final Deferred<SuggestDeleteResponse> deferred = new Deferred<>();
+    protected final Runnable completionListener;
+
+    protected long startTime;
+    protected volatile TaskId taskId;
+    protected volatile boolean done = false;
+    protected Set<TaskId> previousTaskIds = Collections.emptySet();
+
+    protected SuggestDeleteTask(final Client client, final DeleteByQueryRequestBuilder requestBuilder) {
+        this(client, requestBuilder, null);
+    }
+
+    /**
+     * The completion listener runs once the task has ended, whether it succeeded or not.
+     */
+    protected SuggestDeleteTask(final Client client, final DeleteByQueryRequestBuilder requestBuilder, final Runnable completionListener) {
+        this.client = client;
+        this.description = requestBuilder.request().getDescription();
+        this.completionListener = completionListener;
+        start(requestBuilder);
+    }
+
+    protected void start(final DeleteByQueryRequestBuilder requestBuilder) {
+        startTime = System.currentTimeMillis();
+        final ActionListener<BulkByScrollResponse> listener = ActionListener.wrap(response -> {
+            finish();
+            deferred.resolve(new SuggestDeleteResponse(SuggestUtil.getFailures(response), System.currentTimeMillis() - startTime));
+        }, e -> {
+            finish();
+            deferred.reject(e);
+        });
+        if (client instanceof NodeClient) {
+            final NodeClient nodeClient = (NodeClient) client;
+            final Task task = nodeClient.executeLocally(DeleteByQueryAction.INSTANCE, requestBuilder.request(), listener);
+            taskId = new TaskId(nodeClient.getLocalNodeId(), task.getId());
+        } else {
+            // a remote client does not learn the task id, so the task is identified as a new one on first use.
+            previousTaskIds = listTasks().stream().map(TaskInfo::getTaskId).collect(Collectors.toSet());
+            requestBuilder.execute(listener);
+        }
+    }
+
+    public Deferred<SuggestDeleteResponse>.Promise promise() {
+        return deferred.promise();
+    }
+
+    public BulkByScrollTask.Status getStatus() {
+        return findTask().map(task -> (BulkByScrollTask.Status) task.getStatus()).orElse(null);
+    }
+
+    public boolean cancel() {
+        final Optional<TaskInfo> task = findTask();
+        if (!task.isPresent()) {
+            return false;
+        }
+        client.admin().cluster().prepareCancelTasks().setTaskId(task.get().getTaskId()).execute()
+                .actionGet(SuggestConstants.ACTION_TIMEOUT);
+        return true;
+    }
+
+    protected Optional<TaskInfo> findTask() {
+        final TaskId current = taskId;
+        if (current != null) {
+            return client.admin().cluster().prepareListTasks().setTaskId(current).setDetailed(true).execute()
+                    .actionGet(SuggestConstants.ACTION_TIMEOUT).getTasks().stream().findFirst();
+        }
+
+        final List<TaskInfo> tasks = listTasks();
+        synchronized (claimedTaskIds) {
+            if (done || taskId != null) {
+                return done ? Optional.empty() : findTask();
+            }
+            // a task started before this one or claimed by another delete task is never taken.
+            final Optional<TaskInfo> task =
+                    tasks.stream().filter(t -> !previousTaskIds.contains(t.getTaskId()) && !claimedTaskIds.contains(t.getTaskId()))
+                            .min(Comparator.comparingLong(TaskInfo::getStartTime));
+            task.ifPresent(t -> {
+                taskId = t.getTaskId();
+                claimedTaskIds.add(taskId);
+            });
+            return task;
+        }
+    }
+
+    protected List<TaskInfo> listTasks() {
+        return client.admin().cluster().prepareListTasks().setActions(DeleteByQueryAction.NAME).setDetailed(true).execute()
+                .actionGet(SuggestConstants.ACTION_TIMEOUT).getTasks().stream()
+                .filter(t -> !t.getParentTaskId().isSet() && description.equals(t.getDescription())).collect(Collectors.toList());
+    }
+
+    protected void finish() {
+        synchronized (claimedTaskIds) {
+            done = true;
+            if (!(client instanceof NodeClient) && taskId != null) {
+                claimedTaskIds.remove(taskId);
+            }
+        }
+        if (completionListener != null) {
+            completionListener.run();
+        }
+    }
+}
@@ -4,9 +4,17 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -30,16 +38,42 @@ import org.codelibs.fess.suggest.index.writer.SuggestWriter;
 import org.codelibs.fess.suggest.index.writer.SuggestWriterResult;
 import org.codelibs.fess.suggest.normalizer.Normalizer;
 import org.codelibs.fess.suggest.settings.SuggestSettings;
+import org.codelibs.fess.suggest.util.BadWordMatcher;
 import org.codelibs.fess.suggest.util.SuggestUtil;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder;
+import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
+import org.elasticsearch.action.admin.indices.get.GetIndexResponse;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.metadata.AliasMetaData;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.query.Operator;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.reindex.BulkByScrollResponse;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
 import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.slice.SliceBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
 
 public class SuggestIndexer {
+    protected static final TimeValue SCAN_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+
+    protected static final String ROUTING_FIELD = "_routing";
+
+    protected static final String REMOVE_KIND_SCRIPT = "ctx._source[params.field] = 0;"
+            + "if (ctx._source.kinds instanceof List) { ctx._source.kinds.removeAll(Collections.singletonList(params.kind)); }"
+            + "else if (ctx._source.kinds == params.kind) { ctx._source.kinds = []; }"
+            + "ctx._source.score = Math.log10(ctx._source.docFreq + 2) * Math.log10(ctx._source.queryFreq + 2) * ctx._source.userBoost;";
+
     protected final Client client;
     protected String index;
     protected String type;
@@ -50,6 +84,7 @@ public class SuggestIndexer {
     protected String roleFieldName;
     protected String langFieldName;
     protected String[] badWords;
+    protected volatile BadWordMatcher badWordMatcher;
     protected boolean parallel;
 
     protected ReadingConverter readingConverter;
@@ -62,6 +97,10 @@ public class SuggestIndexer {
 
     protected ExecutorService threadPool;
 
+    protected Runnable writeListener;
+
+    protected BooleanSupplier legacyIdIndex;
+
     public SuggestIndexer(final Client client, final String index, final String type, final ReadingConverter readingConverter,
             final ReadingConverter contentsReadingConverter, final Normalizer normalizer, final SuggestAnalyzer analyzer,
             final SuggestSettings settings, final ExecutorService threadPool) {
@@ -70,7 +109,7 @@ public class SuggestIndexer {
         this.type = type;
 
         this.supportedFields = settings.array().get(SuggestSettings.DefaultKeys.SUPPORTED_FIELDS);
-        this.badWords = settings.badword().get(true);
+        updateBadWords(settings.badword().get(true));
         this.tagFieldNames = settings.getAsString(SuggestSettings.DefaultKeys.TAG_FIELD_NAME, StringUtil.EMPTY).split(",");
         this.roleFieldName = settings.getAsString(SuggestSettings.DefaultKeys.ROLE_FIELD_NAME, StringUtil.EMPTY);
         this.langFieldName = settings.getAsString(SuggestSettings.DefaultKeys.LANG_FIELD_NAME, StringUtil.EMPTY);
@@ -95,11 +134,13 @@ public class SuggestIndexer {
     //TODO return result
     public SuggestIndexResponse index(final SuggestItem[] items) {
         // TODO parallel?
-        final SuggestItem[] array = Stream.of(items).filter(item -> !item.isBadWord(badWords)).toArray(n -> new SuggestItem[n]);
+        final BadWordMatcher matcher = badWordMatcher;
+        final SuggestItem[] array = Stream.of(items).filter(item -> !item.isBadWord(matcher)).toArray(n -> new SuggestItem[n]);
 
         try {
             final long start = System.currentTimeMillis();
             final SuggestWriterResult result = suggestWriter.write(client, settings, index, type, array, true);
+            notifyWrite();
             return new SuggestIndexResponse(items.length, items.length, result.getFailures(), System.currentTimeMillis() - start);
         } catch (Exception e) {
             throw new SuggestIndexException("Failed to write items[" + items.length + "] to " + index + "/" + type, e);
@@ -109,6 +150,7 @@ public class SuggestIndexer {
     public SuggestDeleteResponse delete(final String id) {
         final long start = System.currentTimeMillis();
         final SuggestWriterResult result = suggestWriter.delete(client, settings, index, type, id);
+        notifyWrite();
         return new SuggestDeleteResponse(result.getFailures(), System.currentTimeMillis() - start);
     }
 
@@ -119,13 +161,64 @@ public class SuggestIndexer {
     public SuggestDeleteResponse deleteByQuery(final QueryBuilder queryBuilder) {
         final long start = System.currentTimeMillis();
         final SuggestWriterResult result = suggestWriter.deleteByQuery(client, settings, index, type, queryBuilder);
+        notifyWrite();
         return new SuggestDeleteResponse(result.getFailures(), System.currentTimeMillis() - start);
     }
 
+    public SuggestDeleteTask deleteByQueryAsync(final QueryBuilder queryBuilder) {
+        return new SuggestDeleteTask(client, SuggestUtil.createDeleteByQueryRequest(client, index, type, queryBuilder,
+                settings.getAsFloat(SuggestSettings.DefaultKeys.DELETE_REQUESTS_PER_SECOND, Float.POSITIVE_INFINITY)), this::notifyWrite);
+    }
+
     public SuggestDeleteResponse deleteAll() {
-        final SuggestDeleteResponse response = deleteByQuery(QueryBuilders.matchAllQuery());
-        restoreElevateWord();
-        return response;
+        final long start = System.currentTimeMillis();
+        final List<String> oldIndices = new ArrayList<>();
+        client.admin().indices().prepareGetAliases(index).execute().actionGet(SuggestConstants.ACTION_TIMEOUT).getAliases().keysIt()
+                .forEachRemaining(oldIndices::add);
+        if (oldIndices.isEmpty()) {
+            final SuggestDeleteResponse response = deleteByQuery(QueryBuilders.matchAllQuery());
+            restoreElevateWord();
+            return response;
+        }
+
+        try {
+            final GetIndexResponse getIndexResponse =
+                    client.admin().indices().prepareGetIndex().setIndices(oldIndices.toArray(new String[oldIndices.size()])).execute()
+                            .actionGet(SuggestConstants.ACTION_TIMEOUT);
+
+            final String indexName = SuggestUtil.createIndexName(settings.getAsString(SuggestSettings.DefaultKeys.INDEX, index));
+            final String mappings = SuggestUtil.getMappings(settings.getAsBoolean(SuggestSettings.DefaultKeys.READING_ROUTING, false));
+            final CreateIndexResponse createIndexResponse =
+                    client.admin().indices().prepareCreate(indexName)
+                            .setSettings(SuggestUtil.getDefaultIndexSettings(), XContentType.JSON)
+                            .addMapping(type, mappings, XContentType.JSON).execute()
+                            .actionGet(SuggestConstants.ACTION_TIMEOUT);
+            if (!createIndexResponse.isAcknowledged()) {
+                throw new SuggestIndexException("Failed to create index: " + indexName);
+            }
+            client.admin().cluster().prepareHealth(indexName).setWaitForYellowStatus().execute()
+                    .actionGet(SuggestConstants.ACTION_TIMEOUT * 10);
+
+            final IndicesAliasesRequestBuilder aliasesRequestBuilder = client.admin().indices().prepareAliases();
+            for (final String oldIndex : oldIndices) {
+                final List<AliasMetaData> aliases = getIndexResponse.getAliases().get(oldIndex);
+                if (aliases != null) {
+                    aliases.forEach(alias -> aliasesRequestBuilder.removeAlias(oldIndex, alias.alias()).addAlias(indexName, alias.alias()));
+                }
+            }
+            aliasesRequestBuilder.execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+
+            client.admin().indices().prepareDelete(oldIndices.toArray(new String[oldIndices.size()])).execute()
+                    .actionGet(SuggestConstants.ACTION_TIMEOUT);
+        } catch (final SuggestIndexException e) {
+            throw e;
+        } catch (final Exception e) {
+            throw new SuggestIndexException("Failed to recreate index: " + index, e);
+        }
+        notifyWrite();
+
+        final SuggestIndexResponse restoreResponse = restoreElevateWord();
+        return new SuggestDeleteResponse(restoreResponse.getErrors(), System.currentTimeMillis() - start);
     }
 
     public SuggestDeleteResponse deleteDocumentWords() {
@@ -139,30 +232,11 @@ public class SuggestIndexer {
             throw new SuggestIndexException(deleteResponse.getErrors().get(0));
         }
 
-        final List<SuggestItem> updateItems = new ArrayList<>();
-        SearchResponse response =
-                client.prepareSearch(index).setTypes(type).setSize(1000).setScroll(TimeValue.timeValueMinutes(1))
-                        .setQuery(QueryBuilders.rangeQuery(FieldNames.DOC_FREQ).gte(1)).execute().actionGet();
-        while (response.getHits().getHits().length > 0) {
-            final SearchHit[] hits = response.getHits().getHits();
-            for (final SearchHit hit : hits) {
-                final SuggestItem item = SuggestItem.parseSource(hit.getSourceAsMap());
-                item.setDocFreq(0);
-                item.setKinds(Stream.of(item.getKinds()).filter(kind -> kind != SuggestItem.Kind.DOCUMENT)
-                        .toArray(count -> new SuggestItem.Kind[count]));
-                updateItems.add(item);
-            }
-            final SuggestWriterResult result =
-                    suggestWriter.write(client, settings, index, type, updateItems.toArray(new SuggestItem[updateItems.size()]), false);
-            if (result.hasFailure()) {
-                throw new SuggestIndexException(result.getFailures().get(0));
-            }
-
-            final String scrollId = response.getScrollId();
-            response = client.prepareSearchScroll(scrollId).execute().actionGet();
-        }
-
-        return new SuggestDeleteResponse(null, System.currentTimeMillis() - start);
+        final BulkByScrollResponse response =
+                SuggestUtil.updateByQuery(client, index, type, QueryBuilders.rangeQuery(FieldNames.DOC_FREQ).gte(1),
+                        createRemoveKindScript(FieldNames.DOC_FREQ, SuggestItem.Kind.DOCUMENT));
+        notifyWrite();
+        return new SuggestDeleteResponse(SuggestUtil.getFailures(response), System.currentTimeMillis() - start);
     }
 
     public SuggestDeleteResponse deleteQueryWords() {
@@ -176,30 +250,18 @@ public class SuggestIndexer {
             throw new SuggestIndexException(deleteResponse.getErrors().get(0));
         }
 
-        final List<SuggestItem> updateItems = new ArrayList<>();
-        SearchResponse response =
-                client.prepareSearch(index).setTypes(type).setSize(1000).setScroll(TimeValue.timeValueMinutes(1))
-                        .setQuery(QueryBuilders.rangeQuery(FieldNames.QUERY_FREQ).gte(1)).execute().actionGet();
-        while (response.getHits().getHits().length > 0) {
-            final SearchHit[] hits = response.getHits().getHits();
-            for (final SearchHit hit : hits) {
-                final SuggestItem item = SuggestItem.parseSource(hit.getSourceAsMap());
-                item.setQueryFreq(0);
-                item.setKinds(Stream.of(item.getKinds()).filter(kind -> kind != SuggestItem.Kind.QUERY)
-                        .toArray(count -> new SuggestItem.Kind[count]));
-                updateItems.add(item);
-            }
-            final SuggestWriterResult result =
-                    suggestWriter.write(client, settings, index, type, updateItems.toArray(new SuggestItem[updateItems.size()]), false);
-            if (result.hasFailure()) {
-                throw new SuggestIndexException(result.getFailures().get(0));
-            }
-
-            final String scrollId = response.getScrollId();
-            response = client.prepareSearchScroll(scrollId).execute().actionGet();
-        }
+        final BulkByScrollResponse response =
+                SuggestUtil.updateByQuery(client, index, type, QueryBuilders.rangeQuery(FieldNames.QUERY_FREQ).gte(1),
+                        createRemoveKindScript(FieldNames.QUERY_FREQ, SuggestItem.Kind.QUERY));
+        notifyWrite();
+        return new SuggestDeleteResponse(SuggestUtil.getFailures(response), System.currentTimeMillis() - start);
+    }
 
-        return new SuggestDeleteResponse(null, System.currentTimeMillis() - start);
+    protected Script createRemoveKindScript(final String freqField, final SuggestItem.Kind kind) {
+        final Map<String, Object> params = new HashMap<>();
+        params.put("field", freqField);
+        params.put("kind", kind.toString());
+        return new Script(ScriptType.INLINE, "painless", REMOVE_KIND_SCRIPT, params);
     }
 
     public SuggestIndexResponse indexFromQueryLog(final QueryLog queryLog) {
@@ -355,40 +417,154 @@ public class SuggestIndexer {
     }
 
     public SuggestDeleteResponse addBadWord(final String badWord, final boolean apply) {
-        final String normalized = normalizer.normalize(badWord);
-        settings.badword().add(normalized);
-        badWords = settings.badword().get(true);
+        return addBadWords(new String[] { badWord }, apply);
+    }
+
+    public SuggestDeleteResponse addBadWords(final String[] badWords, final boolean apply) {
+        final String[] normalized = Arrays.stream(badWords).map(normalizer::normalize).distinct().toArray(String[]::new);
+        settings.badword().addAll(Arrays.asList(normalized));
+        updateBadWords(settings.badword().get(true));
         if (apply) {
-            return deleteByQuery(QueryBuilders.wildcardQuery(FieldNames.TEXT, "*" + normalized + "*"));
+            return deleteMatchedWords(new BadWordMatcher(normalized));
         } else {
             return new SuggestDeleteResponse(null, 0);
         }
     }
 
+    public SuggestDeleteResponse purgeBadWords() {
+        return deleteMatchedWords(badWordMatcher);
+    }
+
+    protected SuggestDeleteResponse deleteMatchedWords(final BadWordMatcher matcher) {
+        final long start = System.currentTimeMillis();
+        final int slices = getNumberOfShards();
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        final List<FutureTask<Void>> tasks = new ArrayList<>(slices);
+        for (int i = 0; i < slices; i++) {
+            final int slice = i;
+            tasks.add(new FutureTask<>(() -> deleteMatchedWords(slice, slices, matcher, errors), null));
+        }
+        for (int i = 1; i < tasks.size(); i++) {
+            try {
+                threadPool.execute(tasks.get(i));
+            } catch (final RejectedExecutionException e) {
+                // runs on the caller below
+            }
+        }
+        // slices not yet picked up by the pool run on the caller, so a busy pool cannot hold this up.
+        tasks.forEach(FutureTask::run);
+        for (final FutureTask<Void> task : tasks) {
+            try {
+                task.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SuggestIndexException("Interrupted while deleting bad words.", e);
+            } catch (final ExecutionException e) {
+                errors.add(e.getCause());
+            }
+        }
+        client.admin().indices().prepareRefresh(index).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+        notifyWrite();
+        return new SuggestDeleteResponse(errors, System.currentTimeMillis() - start);
+    }
+
+    private void deleteMatchedWords(final int slice, final int slices, final BadWordMatcher matcher, final List<Throwable> errors) {
+        try {
+            final SearchRequestBuilder builder =
+                    client.prepareSearch(index).setTypes(type).setQuery(QueryBuilders.matchAllQuery())
+                            .setFetchSource(FieldNames.TEXT, null).addSort(SortBuilders.fieldSort("_doc")).setSize(1000)
+                            .setScroll(SCAN_KEEP_ALIVE);
+            if (slices > 1) {
+                builder.slice(new SliceBuilder(slice, slices));
+            }
+            SearchResponse response = builder.execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+            String scrollId = response.getScrollId();
+            try {
+                while (response.getHits().getHits().length > 0) {
+                    final BulkRequestBuilder bulkRequestBuilder = client.prepareBulk();
+                    for (final SearchHit hit : response.getHits().getHits()) {
+                        final Object text = hit.getSourceAsMap().get(FieldNames.TEXT);
+                        if (text != null && matcher.matches(text.toString())) {
+                            final DeleteRequest deleteRequest = new DeleteRequest(hit.getIndex(), type, hit.getId());
+                            if (hit.field(ROUTING_FIELD) != null) {
+                                deleteRequest.routing(hit.field(ROUTING_FIELD).getValue());
+                            }
+                            bulkRequestBuilder.add(deleteRequest);
+                        }
+                    }
+                    if (bulkRequestBuilder.numberOfActions() > 0) {
+                        final BulkResponse bulkResponse = bulkRequestBuilder.execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+                        if (bulkResponse.hasFailures()) {
+                            errors.add(new SuggestIndexException(bulkResponse.buildFailureMessage()));
+                        }
+                    }
+                    response =
+                            client.prepareSearchScroll(scrollId).setScroll(SCAN_KEEP_ALIVE).execute()
+                                    .actionGet(SuggestConstants.ACTION_TIMEOUT);
+                    scrollId = response.getScrollId();
+                }
+            } finally {
+                client.prepareClearScroll().addScrollId(scrollId).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+            }
+        } catch (final Exception e) {
+            errors.add(e);
+        }
+    }
+
+    protected int getNumberOfShards() {
+        final GetSettingsResponse response =
+                client.admin().indices().prepareGetSettings(index).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+        int shards = 1;
+        final Iterator<Settings> it = response.getIndexToSettings().valuesIt();
+        while (it.hasNext()) {
+            shards = Math.max(shards, it.next().getAsInt("index.number_of_shards", 1));
+        }
+        return shards;
+    }
+
     public void deleteBadWord(final String badWord) {
         settings.badword().delete(normalizer.normalize(badWord));
+        updateBadWords(settings.badword().get(true));
+    }
+
+    protected void updateBadWords(final String[] badWords) {
+        this.badWordMatcher = new BadWordMatcher(badWords);
+        this.badWords = badWords;
     }
 
     public SuggestIndexResponse addElevateWord(final ElevateWord elevateWord, final boolean apply) {
-        final String normalizedWord = normalizer.normalize(elevateWord.getElevateWord());
-        final List<String> normalizedReadings =
-                elevateWord.getReadings().stream().map(reading -> normalizer.normalize(reading)).collect(Collectors.toList());
-        final ElevateWord normalized =
-                new ElevateWord(normalizedWord, elevateWord.getBoost(), normalizedReadings, elevateWord.getFields(), elevateWord.getTags(),
-                        elevateWord.getRoles());
-        settings.elevateWord().add(normalized);
+        return addElevateWords(new ElevateWord[] { elevateWord }, apply);
+    }
+
+    public SuggestIndexResponse addElevateWords(final ElevateWord[] elevateWords, final boolean apply) {
+        final Function<String, String> normalize = createCachedNormalizer();
+        final List<ElevateWord> normalized =
+                Arrays.stream(elevateWords).map(elevateWord -> normalizeElevateWord(elevateWord, normalize)).collect(Collectors.toList());
+        settings.elevateWord().addAll(normalized);
         if (apply) {
-            return index(normalized.toSuggestItem());
+            return index(normalized.stream().map(ElevateWord::toSuggestItem).toArray(SuggestItem[]::new));
         } else {
             return new SuggestIndexResponse(0, 0, null, 0);
         }
     }
 
+    protected ElevateWord normalizeElevateWord(final ElevateWord elevateWord, final Function<String, String> normalize) {
+        final String normalizedWord = normalize.apply(elevateWord.getElevateWord());
+        final List<String> normalizedReadings = elevateWord.getReadings().stream().map(normalize).collect(Collectors.toList());
+        return new ElevateWord(normalizedWord, elevateWord.getBoost(), normalizedReadings, elevateWord.getFields(), elevateWord.getTags(),
+                elevateWord.getRoles());
+    }
+
+    protected Function<String, String> createCachedNormalizer() {
+        final Map<String, String> cache = new HashMap<>();
+        return text -> cache.computeIfAbsent(text, normalizer::normalize);
+    }
+
     public SuggestDeleteResponse deleteElevateWord(final String elevateWord, final boolean apply) {
         final String normalized = normalizer.normalize(elevateWord);
         settings.elevateWord().delete(normalized);
         if (apply) {
-            return delete(SuggestUtil.createSuggestTextId(normalized));
+            return delete(SuggestUtil.createSuggestTextId(normalized, isLegacyIdIndex()));
         } else {
             return new SuggestDeleteResponse(null, 0);
         }
@@ -396,18 +572,28 @@ public class SuggestIndexer {
 
     public SuggestIndexResponse restoreElevateWord() {
         final long start = System.currentTimeMillis();
-        int numberOfSuggestDocs = 0;
-        int numberOfInputDocs = 0;
-
-        final ElevateWord[] elevateWords = settings.elevateWord().get();
-        final List<Throwable> errors = new ArrayList<>(elevateWords.length);
-        for (final ElevateWord elevateWord : elevateWords) {
-            final SuggestIndexResponse res = addElevateWord(elevateWord, true);
-            numberOfSuggestDocs += res.getNumberOfSuggestDocs();
-            numberOfInputDocs += res.getNumberOfInputDocs();
-            errors.addAll(res.getErrors());
+
+        final Function<String, String> normalize = createCachedNormalizer();
+        final List<SuggestItem> items = new ArrayList<>();
+        final List<ElevateWord> changed = new ArrayList<>();
+        for (final ElevateWord elevateWord : settings.elevateWord().get()) {
+            if (elevateWord == null) {
+                continue;
+            }
+            final ElevateWord normalized = normalizeElevateWord(elevateWord, normalize);
+            if (!normalized.getElevateWord().equals(elevateWord.getElevateWord())
+                    || !normalized.getReadings().equals(elevateWord.getReadings())) {
+                changed.add(normalized);
+            }
+            items.add(normalized.toSuggestItem());
+        }
+        if (!changed.isEmpty()) {
+            settings.elevateWord().addAll(changed);
         }
-        return new SuggestIndexResponse(numberOfSuggestDocs, numberOfInputDocs, errors, System.currentTimeMillis() - start);
+
+        final SuggestIndexResponse res = index(items.toArray(new SuggestItem[items.size()]));
+        return new SuggestIndexResponse(res.getNumberOfSuggestDocs(), res.getNumberOfInputDocs(), res.getErrors(),
+                System.currentTimeMillis() - start);
     }
 
     public SuggestDeleteResponse deleteOldWords(final LocalDateTime threshold) {
@@ -469,4 +655,30 @@ public class SuggestIndexer {
         return this;
     }
 
+    /**
+     * Sets a callback run after every write, so that caches built from the index can be invalidated.
+     */
+    public SuggestIndexer setWriteListener(final Runnable writeListener) {
+        this.writeListener = writeListener;
+        return this;
+    }
+
+    public SuggestIndexer setLegacyIdIndex(final BooleanSupplier legacyIdIndex) {
+        this.legacyIdIndex = legacyIdIndex;
+        if (suggestWriter instanceof SuggestIndexWriter) {
+            ((SuggestIndexWriter) suggestWriter).setLegacyIdIndex(legacyIdIndex);
+        }
+        return this;
+    }
+
+    protected boolean isLegacyIdIndex() {
+        return legacyIdIndex != null ? legacyIdIndex.getAsBoolean() : SuggestUtil.isLegacyIdIndex(client, index, type);
+    }
+
+    protected void notifyWrite() {
+        if (writeListener != null) {
+            writeListener.run();
+        }
+    }
+
 }
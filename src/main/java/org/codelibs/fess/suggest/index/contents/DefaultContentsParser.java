@@ -113,6 +113,8 @@ public class DefaultContentsParser implements ContentsParser {
         }
         final String[] tags = tagList.toArray(new String[tagList.size()]);
         final String[] roles = getFieldValues(document, roleFieldName);
+        final String lang = document.get(langFieldName) == null ? null : document.get(langFieldName).toString();
+        final String[] langs = lang == null ? new String[] {} : new String[] { lang };
 
         for (final String field : fields) {
             final Object textObj = document.get(field);
@@ -120,7 +122,7 @@ public class DefaultContentsParser implements ContentsParser {
                 continue;
             }
             final String text = textObj.toString();
-            final String lang = document.get(langFieldName) == null ? null : document.get(langFieldName).toString();
+            final String[] itemFields = new String[] { field };
 
             final List<AnalyzeResponse.AnalyzeToken> tokens = analyzer.analyze(text, lang);
             final List<AnalyzeResponse.AnalyzeToken> readingTokens = analyzer.analyzeAndReading(text, lang);
@@ -147,8 +149,7 @@ public class DefaultContentsParser implements ContentsParser {
                         items = new ArrayList<>(text.length() * fields.length / field.length());
                     }
 
-                    final String[] langs = lang == null ? new String[] {} : new String[] { lang };
-                    items.add(new SuggestItem(words, readings, new String[] { field }, 1L, 0, -1, tags, roles, langs,
+                    items.add(new SuggestItem(words, readings, itemFields, 1L, 0, -1, tags, roles, langs,
                             SuggestItem.Kind.DOCUMENT));
                 }
             } catch (final IOException e) {
@@ -1,5 +1,8 @@
 package org.codelibs.fess.suggest.index.writer;
 
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
 import org.codelibs.fess.suggest.constants.SuggestConstants;
 import org.codelibs.fess.suggest.entity.SuggestItem;
 import org.codelibs.fess.suggest.exception.SuggestIndexException;
@@ -9,14 +12,18 @@ import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
 import org.elasticsearch.action.index.IndexAction;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.client.Client;
-import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.query.QueryBuilder;
 
 public class SuggestIndexWriter implements SuggestWriter {
+    protected BooleanSupplier legacyIdIndex;
+
     @Override
     public SuggestWriterResult write(final Client client, final SuggestSettings settings, final String index, final String type,
             final SuggestItem[] items, final boolean update) {
@@ -27,23 +34,64 @@ public class SuggestIndexWriter implements SuggestWriter {
             return new SuggestWriterResult();
         }
 
-        for (final SuggestItem item : mergedItems) {
-            final GetResponse getResponse =
-                    client.prepareGet().setIndex(index).setType(type).setId(item.getId()).get(TimeValue.timeValueSeconds(30));
-            if (update && getResponse.isExists()) {
-                final IndexRequestBuilder indexRequestBuilder = new IndexRequestBuilder(client, IndexAction.INSTANCE, index);
-                indexRequestBuilder.setType(type).setId(item.getId()).setOpType(IndexRequest.OpType.INDEX)
-                        .setSource(item.getUpdatedSource(getResponse.getSourceAsMap()));
-                bulkRequestBuilder.add(indexRequestBuilder);
+        // an index created before murmur3 ids keeps its ids until it is migrated.
+        final boolean legacyIds = legacyIdIndex != null ? legacyIdIndex.getAsBoolean() : SuggestUtil.isLegacyIdIndex(client, index, type);
+        final String[] ids = new String[mergedItems.length];
+        for (int i = 0; i < mergedItems.length; i++) {
+            ids[i] = legacyIds ? SuggestUtil.createLegacySuggestTextId(mergedItems[i].getText()) : mergedItems[i].getId();
+        }
+
+        final boolean canonicalReading = settings.getAsBoolean(SuggestSettings.DefaultKeys.CANONICAL_READING, false);
+        final String[] routings = new String[mergedItems.length];
+        final MultiGetItemResponse[] getResponses;
+        if (settings.getAsBoolean(SuggestSettings.DefaultKeys.READING_ROUTING, false)) {
+            // an existing document keeps its shard even if it arrives with other readings this time.
+            final Map<String, MultiGetItemResponse> storedDocuments = SuggestUtil.getStoredDocuments(client, index, type, ids, update);
+            getResponses = new MultiGetItemResponse[mergedItems.length];
+            for (int i = 0; i < mergedItems.length; i++) {
+                getResponses[i] = storedDocuments.get(ids[i]);
+                if (!getResponses[i].isFailed() && getResponses[i].getResponse().isExists()) {
+                    routings[i] = SuggestUtil.getStoredRouting(getResponses[i].getResponse());
+                } else {
+                    routings[i] = SuggestUtil.createRouting(mergedItems[i]);
+                }
+            }
+        } else if (update) {
+            final MultiGetRequestBuilder multiGetRequestBuilder = client.prepareMultiGet();
+            for (int i = 0; i < mergedItems.length; i++) {
+                multiGetRequestBuilder.add(new MultiGetRequest.Item(index, type, ids[i]));
+            }
+            getResponses = multiGetRequestBuilder.execute().actionGet(SuggestConstants.ACTION_TIMEOUT).getResponses();
+        } else {
+            getResponses = null;
+        }
+
+        final SuggestWriterResult result = new SuggestWriterResult();
+        for (int i = 0; i < mergedItems.length; i++) {
+            final SuggestItem item = mergedItems[i];
+            if (getResponses != null && getResponses[i].isFailed()) {
+                result.addFailure(new SuggestIndexException("Failed to get " + ids[i] + ". "
+                        + getResponses[i].getFailure().getMessage()));
+                continue;
+            }
+            final GetResponse getResponse = getResponses == null || !update ? null : getResponses[i].getResponse();
+            final IndexRequestBuilder indexRequestBuilder = new IndexRequestBuilder(client, IndexAction.INSTANCE, index);
+            indexRequestBuilder.setType(type).setId(ids[i]).setOpType(IndexRequest.OpType.INDEX);
+            if (routings[i] != null) {
+                indexRequestBuilder.setRouting(routings[i]);
+            }
+            if (getResponse != null && getResponse.isExists()) {
+                indexRequestBuilder.setSource(item.getUpdatedSource(getResponse.getSourceAsMap(), canonicalReading));
             } else {
-                final IndexRequestBuilder indexRequestBuilder = new IndexRequestBuilder(client, IndexAction.INSTANCE, index);
-                indexRequestBuilder.setType(type).setId(item.getId()).setOpType(IndexRequest.OpType.INDEX).setSource(item.getSource());
-                bulkRequestBuilder.add(indexRequestBuilder);
+                indexRequestBuilder.setSource(item.getSource(canonicalReading));
             }
+            bulkRequestBuilder.add(indexRequestBuilder);
         }
 
+        if (bulkRequestBuilder.numberOfActions() == 0) {
+            return result;
+        }
         final BulkResponse response = bulkRequestBuilder.execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
-        final SuggestWriterResult result = new SuggestWriterResult();
         if (response.hasFailures()) {
             for (final BulkItemResponse bulkItemResponses : response.getItems()) {
                 if (bulkItemResponses.isFailed()) {
@@ -55,12 +103,35 @@ public class SuggestIndexWriter implements SuggestWriter {
         return result;
     }
 
+    /**
+     * Sets a cached check for legacy ids, so that the mapping is not fetched on every write.
+     */
+    public SuggestIndexWriter setLegacyIdIndex(final BooleanSupplier legacyIdIndex) {
+        this.legacyIdIndex = legacyIdIndex;
+        return this;
+    }
+
     @Override
     public SuggestWriterResult delete(final Client client, final SuggestSettings settings, final String index, final String type,
             final String id) {
         final SuggestWriterResult result = new SuggestWriterResult();
         try {
-            client.prepareDelete().setIndex(index).setType(type).setId(id).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+            if (settings.getAsBoolean(SuggestSettings.DefaultKeys.READING_ROUTING, false)) {
+                // the routing value cannot be derived from the id, so the stored one is used.
+                final MultiGetItemResponse stored =
+                        SuggestUtil.getStoredDocuments(client, index, type, new String[] { id }, false).get(id);
+                if (stored.isFailed()) {
+                    result.addFailure(new SuggestIndexException("Failed to get " + id + ". " + stored.getFailure().getMessage()));
+                } else if (!stored.getResponse().isExists()) {
+                    result.addFailure(new SuggestIndexException("Not found " + id + "."));
+                } else {
+                    client.prepareDelete().setIndex(index).setType(type).setId(id)
+                            .setRouting(SuggestUtil.getStoredRouting(stored.getResponse())).execute()
+                            .actionGet(SuggestConstants.ACTION_TIMEOUT);
+                }
+            } else {
+                client.prepareDelete().setIndex(index).setType(type).setId(id).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+            }
         } catch (final Exception e) {
             result.addFailure(e);
         }
@@ -72,7 +143,8 @@ public class SuggestIndexWriter implements SuggestWriter {
             final QueryBuilder queryBuilder) {
         final SuggestWriterResult result = new SuggestWriterResult();
         try {
-            SuggestUtil.deleteByQuery(client, index, type, queryBuilder);
+            SuggestUtil.deleteByQuery(client, index, type, queryBuilder,
+                    settings.getAsFloat(SuggestSettings.DefaultKeys.DELETE_REQUESTS_PER_SECOND, Float.POSITIVE_INFINITY));
         } catch (final Exception e) {
             result.addFailure(e);
         }
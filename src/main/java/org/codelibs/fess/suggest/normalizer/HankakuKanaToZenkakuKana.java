@@ -17,37 +17,24 @@ public class HankakuKanaToZenkakuKana implements Normalizer {
     public String normalize(final String s, final String... langs) {
         if (s.length() == 0) {
             return s;
-        } else if (s.length() == 1) {
-            return hankakuKatakanaToZenkakuKatakana(s.charAt(0)) + "";
-        } else {
-            final StringBuffer sb = new StringBuffer(s);
-            int i;
-            for (i = 0; i < sb.length() - 1; i++) {
-                final char originalChar1 = sb.charAt(i);
-                final char originalChar2 = sb.charAt(i + 1);
-                final char margedChar = mergeChar(originalChar1, originalChar2);
+        }
+        final StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            final char originalChar1 = s.charAt(i);
+            if (i + 1 < s.length()) {
+                final char margedChar = mergeChar(originalChar1, s.charAt(i + 1));
                 if (margedChar != originalChar1) {
-                    sb.setCharAt(i, margedChar);
-                    sb.deleteCharAt(i + 1);
-                } else {
-                    final char convertedChar = hankakuKatakanaToZenkakuKatakana(originalChar1);
-                    if (convertedChar != originalChar1) {
-                        sb.setCharAt(i, convertedChar);
-                    }
-                }
-            }
-            if (i < sb.length()) {
-                final char originalChar1 = sb.charAt(i);
-                final char convertedChar = hankakuKatakanaToZenkakuKatakana(originalChar1);
-                if (convertedChar != originalChar1) {
-                    sb.setCharAt(i, convertedChar);
+                    sb.append(margedChar);
+                    i++;
+                    continue;
                 }
             }
-            return sb.toString();
+            sb.append(hankakuKatakanaToZenkakuKatakana(originalChar1));
         }
+        return sb.toString();
     }
 
-    private static char hankakuKatakanaToZenkakuKatakana(final char c) {
+    static char hankakuKatakanaToZenkakuKatakana(final char c) {
         if (c >= HANKAKU_KATAKANA_FIRST_CHAR && c <= HANKAKU_KATAKANA_LAST_CHAR) {
             return ZENKAKU_KATAKANA[c - HANKAKU_KATAKANA_FIRST_CHAR];
         } else {
@@ -0,0 +1,55 @@
+package org.codelibs.fess.suggest.normalizer;
+
+import com.ibm.icu.text.Transliterator;
+
+/**
+ * Single-pass equivalent of HankakuKanaToZenkakuKana, FullWidthToHalfWidthAlphabetNormalizer and ICUNormalizer("Any-Lower").
+ */
+public class LocalNormalizer implements Normalizer {
+    protected Transliterator anyLower;
+
+    public LocalNormalizer() {
+        anyLower = Transliterator.getInstance("Any-Lower");
+    }
+
+    @Override
+    public String normalize(final String text, final String... langs) {
+        final int length = text.length();
+        final char[] chars = new char[length];
+        int count = 0;
+        boolean needsTransliteration = false;
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+            if (i + 1 < length) {
+                final char mergedChar = HankakuKanaToZenkakuKana.mergeChar(c, text.charAt(i + 1));
+                if (mergedChar != c) {
+                    chars[count++] = mergedChar;
+                    i++;
+                    continue;
+                }
+            }
+
+            final char converted = HankakuKanaToZenkakuKana.hankakuKatakanaToZenkakuKatakana(c);
+            if (converted >= 'A' && converted <= 'Z') {
+                chars[count++] = (char) (converted - 'A' + 'a');
+            } else if (converted >= 'Ａ' && converted <= 'Ｚ') {
+                chars[count++] = (char) (converted - 'Ａ' + 'a');
+            } else if (converted >= 'ａ' && converted <= 'ｚ') {
+                chars[count++] = (char) (converted - 'ａ' + 'a');
+            } else {
+                chars[count++] = converted;
+                needsTransliteration |= !isCaseless(converted);
+            }
+        }
+
+        final String normalized = new String(chars, 0, count);
+        if (needsTransliteration) {
+            return anyLower.transliterate(normalized);
+        }
+        return normalized;
+    }
+
+    private static boolean isCaseless(final char c) {
+        return c < 0x80 || c >= '　' && c <= 'ヿ' || c >= '㐀' && c <= '鿿' || c >= '＀' && c <= '￯';
+    }
+}
@@ -0,0 +1,108 @@
+package org.codelibs.fess.suggest.request.popularwords;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+
+import org.codelibs.fess.suggest.entity.SuggestItem;
+
+/**
+ * Top popular words per filter key, reloaded from the index once they are older than refreshIntervalMillis.
+ */
+public class PopularWordsPool {
+    protected final int poolSize;
+
+    protected final long refreshIntervalMillis;
+
+    protected final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    protected final Map<String, FutureTask<Entry>> loadings = new ConcurrentHashMap<>();
+
+    public PopularWordsPool(final int poolSize, final long refreshIntervalMillis) {
+        this.poolSize = poolSize;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+
+    /**
+     * Returns the pooled entry, loading it if it is missing or expired. Concurrent callers for the same key wait for a
+     * single load. Returns null if the load failed, so that the caller can search the index directly.
+     */
+    public Entry get(final String key, final Supplier<Entry> loader) {
+        final Entry entry = entries.get(key);
+        if (entry != null && !isExpired(entry)) {
+            return entry;
+        }
+
+        final FutureTask<Entry> task = new FutureTask<>(loader::get);
+        final FutureTask<Entry> loading = loadings.putIfAbsent(key, task);
+        if (loading == null) {
+            try {
+                task.run();
+                if (!task.isCancelled() && loadings.get(key) == task) {
+                    entries.put(key, task.get());
+                }
+            } catch (final ExecutionException e) {
+                return null;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } finally {
+                loadings.remove(key, task);
+            }
+        }
+
+        try {
+            return (loading != null ? loading : task).get();
+        } catch (final ExecutionException e) {
+            return null;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void clear() {
+        loadings.clear();
+        entries.clear();
+    }
+
+    protected boolean isExpired(final Entry entry) {
+        return System.currentTimeMillis() - entry.loadedAt > refreshIntervalMillis;
+    }
+
+    public static class Entry {
+        protected final String index;
+
+        protected final List<SuggestItem> items;
+
+        protected final long total;
+
+        protected final long loadedAt = System.currentTimeMillis();
+
+        public Entry(final String index, final List<SuggestItem> items, final long total) {
+            this.index = index;
+            this.items = Collections.unmodifiableList(items);
+            this.total = total;
+        }
+
+        public List<SuggestItem> getItems() {
+            return items;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public boolean isComplete() {
+            return items.size() >= total;
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package org.codelibs.fess.suggest.request.popularwords;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 import org.codelibs.fess.suggest.concurrent.Deferred;
 import org.codelibs.fess.suggest.constants.FieldNames;
@@ -48,6 +52,8 @@ public class PopularWordsRequest extends Request<PopularWordsResponse> {
 
     private final List<String> excludeWords = new ArrayList<>();
 
+    private PopularWordsPool pool;
+
     public void setIndex(final String index) {
         this.index = index;
     }
@@ -92,8 +98,22 @@ public class PopularWordsRequest extends Request<PopularWordsResponse> {
         this.queryFreqThreshold = queryFreqThreshold;
     }
 
+    public void setPool(final PopularWordsPool pool) {
+        this.pool = pool;
+    }
+
     @Override
     protected void processRequest(final Client client, final Deferred<PopularWordsResponse> deferred) {
+        if (pool != null) {
+            final PopularWordsPool.Entry entry = pool.get(createPoolKey(), () -> loadPool(client));
+            // a failed load falls back to the search below.
+            final PopularWordsResponse response = entry != null ? createPooledResponse(entry) : null;
+            if (response != null) {
+                deferred.resolve(response);
+                return;
+            }
+        }
+
         final SearchRequestBuilder builder = client.prepareSearch(index);
         if (!Strings.isNullOrEmpty(type)) {
             builder.setTypes(type);
@@ -125,6 +145,10 @@ public class PopularWordsRequest extends Request<PopularWordsResponse> {
     }
 
     protected QueryBuilder buildQuery() {
+        return buildQuery(excludeWords);
+    }
+
+    protected QueryBuilder buildQuery(final List<String> excludeWords) {
         final BoolQueryBuilder queryBuilder = QueryBuilders.boolQuery();
         queryBuilder.must(QueryBuilders.termQuery(FieldNames.KINDS, SuggestItem.Kind.QUERY.toString()));
         queryBuilder.mustNot(QueryBuilders.existsQuery(FieldNames.READING_PREFIX + "1"));
@@ -144,7 +168,6 @@ public class PopularWordsRequest extends Request<PopularWordsResponse> {
             queryBuilder.mustNot(QueryBuilders.termsQuery(FieldNames.TEXT, excludeWords));
         }
 
-        ;
         final FunctionScoreQueryBuilder functionScoreQueryBuilder =
                 QueryBuilders.functionScoreQuery(queryBuilder, ScoreFunctionBuilders.fieldValueFactorFunction(FieldNames.QUERY_FREQ)
                         .missing(0));
@@ -152,6 +175,66 @@ public class PopularWordsRequest extends Request<PopularWordsResponse> {
         return functionScoreQueryBuilder;
     }
 
+    protected String createPoolKey() {
+        return String.join("\u0000", index, String.valueOf(type), String.valueOf(queryFreqThreshold), tags.toString(), roles.toString(),
+                fields.toString());
+    }
+
+    protected PopularWordsPool.Entry loadPool(final Client client) {
+        final SearchRequestBuilder builder = client.prepareSearch(index);
+        if (!Strings.isNullOrEmpty(type)) {
+            builder.setTypes(type);
+        }
+        final SearchResponse searchResponse =
+                builder.setSize(pool.getPoolSize()).setQuery(buildQuery(Collections.emptyList())).execute()
+                        .actionGet(SuggestConstants.ACTION_TIMEOUT);
+        if (searchResponse.getFailedShards() > 0) {
+            throw new SuggesterException("Search failure. Failed shards num:" + searchResponse.getFailedShards());
+        }
+        final SearchHit[] hits = searchResponse.getHits().getHits();
+        final List<SuggestItem> items = new ArrayList<>(hits.length);
+        for (final SearchHit hit : hits) {
+            items.add(SuggestItem.parseSource(hit.getSourceAsMap()));
+        }
+        return new PopularWordsPool.Entry(hits.length > 0 ? hits[0].getIndex() : SuggestConstants.EMPTY_STRING, items, searchResponse
+                .getHits().getTotalHits());
+    }
+
+    protected PopularWordsResponse createPooledResponse(final PopularWordsPool.Entry entry) {
+        final long start = System.currentTimeMillis();
+        final Set<String> excludeWordSet = new HashSet<>(excludeWords);
+        final List<SuggestItem> candidates = new ArrayList<>(entry.getItems().size());
+        int excluded = 0;
+        for (final SuggestItem item : entry.getItems()) {
+            if (excludeWordSet.contains(item.getText())) {
+                excluded++;
+            } else {
+                candidates.add(item);
+            }
+        }
+        if (!entry.isComplete() && (candidates.size() < Math.max(windowSize, size) || excluded < excludeWordSet.size())) {
+            // the pool cannot tell the exact window or total, so ask the index.
+            return null;
+        }
+
+        final List<SuggestItem> window = new ArrayList<>(candidates.subList(0, Math.min(windowSize, candidates.size())));
+        Collections.shuffle(window, new Random(seed.hashCode()));
+        final List<SuggestItem> sampled = new ArrayList<>(size);
+        for (int i = 0; i < size && i < candidates.size(); i++) {
+            sampled.add(i < window.size() ? window.get(i) : candidates.get(i));
+        }
+
+        final List<String> words = new ArrayList<>(sampled.size());
+        final List<SuggestItem> items = new ArrayList<>();
+        for (final SuggestItem item : sampled) {
+            words.add(item.getText());
+            if (detail) {
+                items.add(item);
+            }
+        }
+        return new PopularWordsResponse(entry.index, System.currentTimeMillis() - start, words, entry.getTotal() - excluded, items);
+    }
+
     protected RescorerBuilder<?> buildRescore() {
         return new QueryRescorerBuilder(QueryBuilders.functionScoreQuery(ScoreFunctionBuilders.randomFunction().seed(seed).setField("_id")))
                 .setQueryWeight(0).setRescoreQueryWeight(1);
@@ -38,6 +38,11 @@ public class PopularWordsRequestBuilder extends RequestBuilder<PopularWordsReque
         return this;
     }
 
+    public PopularWordsRequestBuilder setPool(final PopularWordsPool pool) {
+        request.setPool(pool);
+        return this;
+    }
+
     public PopularWordsRequestBuilder setSeed(final String seed) {
         request.setSeed(seed);
         return this;
@@ -0,0 +1,160 @@
+package org.codelibs.fess.suggest.request.suggest;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codelibs.fess.suggest.entity.ElevateWord;
+import org.codelibs.fess.suggest.entity.SuggestItem;
+import org.codelibs.fess.suggest.settings.SuggestSettings;
+
+/**
+ * In-memory view of the elevate words, indexed by their first reading, that is merged into suggest results at query time.
+ */
+public class ElevateWordOverlay {
+    protected final SuggestSettings settings;
+
+    protected volatile Snapshot snapshot;
+
+    public ElevateWordOverlay(final SuggestSettings settings) {
+        this.settings = settings;
+    }
+
+    public List<SuggestItem> lookup(final List<List<String>> readings, final boolean prefix) {
+        final Snapshot current = getSnapshot();
+        if (readings.isEmpty() || readings.get(0).isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final List<Integer> candidates = new ArrayList<>();
+        final boolean firstPrefix = prefix && readings.size() == 1;
+        for (final String reading : readings.get(0)) {
+            current.root.collect(reading, firstPrefix, candidates);
+        }
+
+        final List<SuggestItem> matched = new ArrayList<>();
+        for (final int candidate : candidates.stream().mapToInt(Integer::intValue).distinct().sorted().toArray()) {
+            final SuggestItem item = current.items.get(candidate);
+            if (matches(item, readings, prefix)) {
+                matched.add(item);
+            }
+        }
+        return matched;
+    }
+
+    protected boolean matches(final SuggestItem item, final List<List<String>> readings, final boolean prefix) {
+        if (item.getReadingNum() < readings.size()) {
+            return false;
+        }
+        for (int i = 1; i < readings.size(); i++) {
+            final boolean last = i + 1 == readings.size();
+            boolean found = false;
+            for (final String reading : readings.get(i)) {
+                for (final String itemReading : item.getReadingList(i)) {
+                    if (last && prefix ? itemReading.startsWith(reading) : itemReading.equals(reading)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (found) {
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected Snapshot getSnapshot() {
+        final long settingsVersion = settings.getVersion();
+        final Snapshot current = snapshot;
+        if (current != null && current.settingsVersion == settingsVersion) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null || snapshot.settingsVersion != settingsVersion) {
+                // other settings writes change the settings version too, so only rebuild when the elevate words changed.
+                final long version = settings.elevateWord().getVersion();
+                if (snapshot != null && snapshot.version == version) {
+                    snapshot = new Snapshot(snapshot, settingsVersion);
+                } else {
+                    snapshot = new Snapshot(settings.elevateWord().get(), version, settingsVersion);
+                }
+            }
+            return snapshot;
+        }
+    }
+
+    protected static class Snapshot {
+        protected final List<SuggestItem> items;
+        protected final Node root;
+        protected final long version;
+        protected final long settingsVersion;
+
+        protected Snapshot(final ElevateWord[] elevateWords, final long version, final long settingsVersion) {
+            final List<SuggestItem> list = new ArrayList<>(elevateWords.length);
+            final Node node = new Node();
+            for (final ElevateWord elevateWord : elevateWords) {
+                if (elevateWord == null || elevateWord.getReadings().isEmpty()) {
+                    continue;
+                }
+                final SuggestItem item = elevateWord.toSuggestItem();
+                for (final String reading : item.getReadingList(0)) {
+                    node.add(reading, list.size());
+                }
+                list.add(item);
+            }
+            this.items = Collections.unmodifiableList(list);
+            this.root = node;
+            this.version = version;
+            this.settingsVersion = settingsVersion;
+        }
+
+        protected Snapshot(final Snapshot snapshot, final long settingsVersion) {
+            this.items = snapshot.items;
+            this.root = snapshot.root;
+            this.version = snapshot.version;
+            this.settingsVersion = settingsVersion;
+        }
+    }
+
+    protected static class Node {
+        protected final Map<Character, Node> children = new HashMap<>();
+        protected final List<Integer> values = new ArrayList<>(1);
+
+        protected void add(final String reading, final int value) {
+            Node node = this;
+            for (int i = 0; i < reading.length(); i++) {
+                node = node.children.computeIfAbsent(reading.charAt(i), c -> new Node());
+            }
+            node.values.add(value);
+        }
+
+        protected void collect(final String reading, final boolean prefix, final List<Integer> results) {
+            Node node = this;
+            for (int i = 0; i < reading.length() && node != null; i++) {
+                node = node.children.get(reading.charAt(i));
+            }
+            if (node == null) {
+                return;
+            }
+            if (!prefix) {
+                results.addAll(node.values);
+                return;
+            }
+            final Deque<Node> stack = new ArrayDeque<>();
+            stack.push(node);
+            while (!stack.isEmpty()) {
+                final Node current = stack.pop();
+                results.addAll(current.values);
+                current.children.values().forEach(stack::push);
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package org.codelibs.fess.suggest.request.suggest;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers reading queries that matched nothing. A later query whose reading clauses are all contained in a cached one
+ * (for example a longer prefix of the same reading with the same filters) can only match nothing as well.
+ *
+ * Entries are indexed by filter key and by the first characters of their first clause, so a lookup only checks the
+ * entries that can cover the query.
+ */
+public class NegativeResultCache {
+    public static final long DEFAULT_REFRESH_INTERVAL_MILLIS = 10 * 1000L;
+
+    protected final int maxSize;
+
+    protected final long ttlMillis;
+
+    protected final long refreshIntervalMillis;
+
+    protected final Map<String, Set<Entry>> buckets = new ConcurrentHashMap<>();
+
+    // guards every change of the buckets and keeps the access order for eviction.
+    protected final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    protected volatile long notBefore = 0;
+
+    protected final LongAdder hitCount = new LongAdder();
+
+    protected final LongAdder missCount = new LongAdder();
+
+    public NegativeResultCache(final int maxSize, final long ttlMillis) {
+        this(maxSize, ttlMillis, DEFAULT_REFRESH_INTERVAL_MILLIS);
+    }
+
+    public NegativeResultCache(final int maxSize, final long ttlMillis, final long refreshIntervalMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+
+    public boolean contains(final String filterKey, final List<List<String>> readings, final boolean prefix) {
+        if (!readings.isEmpty() && !readings.get(0).isEmpty()) {
+            final String first = readings.get(0).get(0);
+            final long now = System.currentTimeMillis();
+            final Entry entry = find(createBucketKey(filterKey, first), readings, prefix, now);
+            final Entry found = entry != null || first.isEmpty() ? entry : find(createBucketKey(filterKey, ""), readings, prefix, now);
+            if (found != null) {
+                synchronized (entries) {
+                    entries.get(found.key);
+                }
+                hitCount.increment();
+                return true;
+            }
+        }
+        missCount.increment();
+        return false;
+    }
+
+    protected Entry find(final String bucketKey, final List<List<String>> readings, final boolean prefix, final long now) {
+        final Set<Entry> bucket = buckets.get(bucketKey);
+        if (bucket == null) {
+            return null;
+        }
+        for (final Entry entry : bucket) {
+            if (entry.expiresAt < now) {
+                remove(entry);
+            } else if (entry.covers(readings, prefix)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    public void put(final String filterKey, final List<List<String>> readings, final boolean prefix) {
+        if (readings.isEmpty() || System.currentTimeMillis() < notBefore) {
+            // a recent write may not be searchable yet, so the empty result may be wrong.
+            return;
+        }
+        final String key = filterKey + '\u0000' + prefix + '\u0000' + readings;
+        final Set<String> bucketKeys = new LinkedHashSet<>();
+        for (final String reading : readings.get(0)) {
+            bucketKeys.add(createBucketKey(filterKey, reading));
+        }
+        final Entry entry = new Entry(key, bucketKeys, readings, prefix, System.currentTimeMillis() + ttlMillis);
+        synchronized (entries) {
+            final Entry old = entries.put(key, entry);
+            if (old != null) {
+                removeFromBuckets(old);
+            }
+            for (final String bucketKey : bucketKeys) {
+                buckets.computeIfAbsent(bucketKey, k -> ConcurrentHashMap.newKeySet()).add(entry);
+            }
+            final Iterator<Entry> it = entries.values().iterator();
+            while (entries.size() > maxSize && it.hasNext()) {
+                final Entry eldest = it.next();
+                it.remove();
+                removeFromBuckets(eldest);
+            }
+        }
+    }
+
+    /**
+     * Drops every entry and ignores new ones until the written documents are searchable.
+     */
+    public void invalidate() {
+        notBefore = Math.max(notBefore, System.currentTimeMillis() + refreshIntervalMillis);
+        clear();
+    }
+
+    /**
+     * Called after an explicit refresh, which makes every write so far searchable.
+     */
+    public void refreshed() {
+        notBefore = Math.min(notBefore, System.currentTimeMillis());
+        clear();
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            buckets.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    protected void remove(final Entry entry) {
+        synchronized (entries) {
+            if (entries.get(entry.key) == entry) {
+                entries.remove(entry.key);
+                removeFromBuckets(entry);
+            }
+        }
+    }
+
+    protected void removeFromBuckets(final Entry entry) {
+        for (final String bucketKey : entry.bucketKeys) {
+            buckets.computeIfPresent(bucketKey, (k, bucket) -> {
+                bucket.remove(entry);
+                return bucket.isEmpty() ? null : bucket;
+            });
+        }
+    }
+
+    protected static String createBucketKey(final String filterKey, final String reading) {
+        return reading.isEmpty() ? filterKey + '\u0000' : filterKey + '\u0000' + reading.charAt(0);
+    }
+
+    protected static class Entry {
+        protected final String key;
+
+        protected final Set<String> bucketKeys;
+
+        protected final ReadingClauses clauses;
+
+        protected final long expiresAt;
+
+        protected Entry(final String key, final Set<String> bucketKeys, final List<List<String>> readings, final boolean prefix,
+                final long expiresAt) {
+            this.key = key;
+            this.bucketKeys = bucketKeys;
+            this.clauses = new ReadingClauses(readings, prefix);
+            this.expiresAt = expiresAt;
+        }
+
+        protected boolean covers(final List<List<String>> queryReadings, final boolean queryPrefix) {
+            return clauses.contains(queryReadings, queryPrefix);
+        }
+    }
+}
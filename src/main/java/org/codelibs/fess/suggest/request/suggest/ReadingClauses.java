@@ -0,0 +1,85 @@
+package org.codelibs.fess.suggest.request.suggest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.codelibs.fess.suggest.entity.SuggestItem;
+
+/**
+ * The reading values a suggest query matches per term, the last term being matched as a prefix when prefix is true.
+ */
+public class ReadingClauses {
+    protected final List<Set<String>> clauses;
+
+    protected final boolean prefix;
+
+    public ReadingClauses(final List<List<String>> clauses, final boolean prefix) {
+        this.clauses = new ArrayList<>(clauses.size());
+        clauses.forEach(list -> this.clauses.add(new HashSet<>(list)));
+        this.prefix = prefix;
+    }
+
+    /**
+     * Returns true when every document matching the given clauses also matches these clauses.
+     */
+    public boolean contains(final List<List<String>> queryClauses, final boolean queryPrefix) {
+        final int last = clauses.size() - 1;
+        if (last < 0 || queryClauses.size() <= last) {
+            return false;
+        }
+        for (int i = 0; i < last; i++) {
+            if (!clauses.get(i).containsAll(queryClauses.get(i))) {
+                return false;
+            }
+        }
+
+        final List<String> lastClauses = queryClauses.get(last);
+        if (prefix) {
+            for (final String value : lastClauses) {
+                if (clauses.get(last).stream().noneMatch(value::startsWith)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        final boolean lastIsPrefix = queryPrefix && queryClauses.size() == last + 1;
+        return !lastIsPrefix && clauses.get(last).containsAll(lastClauses);
+    }
+
+    public boolean matches(final SuggestItem item) {
+        if (item.getReadingNum() < clauses.size()) {
+            return false;
+        }
+        for (int i = 0; i < clauses.size(); i++) {
+            if (!matches(i, item.getReadingList(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean matches(final String[][] readings) {
+        if (readings.length < clauses.size()) {
+            return false;
+        }
+        for (int i = 0; i < clauses.size(); i++) {
+            if (!matches(i, Arrays.asList(readings[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected boolean matches(final int index, final List<String> readings) {
+        final boolean prefixTerm = prefix && index + 1 == clauses.size();
+        for (final String reading : readings) {
+            if (prefixTerm ? clauses.get(index).stream().anyMatch(reading::startsWith) : clauses.get(index).contains(reading)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,250 @@
+package org.codelibs.fess.suggest.request.suggest;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.codelibs.fess.suggest.constants.FieldNames;
+import org.codelibs.fess.suggest.constants.SuggestConstants;
+import org.codelibs.fess.suggest.converter.ReadingCanonicalizer;
+import org.codelibs.fess.suggest.entity.SuggestItem;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.sort.SortBuilders;
+
+/**
+ * Materialized top-N suggestions, ordered by the precomputed score, for every reading prefix up to maxPrefixLength characters.
+ * The table is unavailable, and requests fall back to the index, from a write until a build that started after the write
+ * became searchable, and once it is older than ttlMillis.
+ */
+public class ShortPrefixTable {
+    public static final long DEFAULT_TTL_MILLIS = 10 * 60 * 1000L;
+
+    public static final long DEFAULT_REFRESH_INTERVAL_MILLIS = 10 * 1000L;
+
+    protected final int maxPrefixLength;
+
+    protected final int windowSize;
+
+    protected final long ttlMillis;
+
+    protected final long refreshIntervalMillis;
+
+    protected volatile Snapshot snapshot;
+
+    protected volatile long staleUntil = 0;
+
+    protected final AtomicBoolean building = new AtomicBoolean(false);
+
+    public ShortPrefixTable(final int maxPrefixLength, final int windowSize) {
+        this(maxPrefixLength, windowSize, DEFAULT_TTL_MILLIS, DEFAULT_REFRESH_INTERVAL_MILLIS);
+    }
+
+    public ShortPrefixTable(final int maxPrefixLength, final int windowSize, final long ttlMillis, final long refreshIntervalMillis) {
+        this.maxPrefixLength = maxPrefixLength;
+        this.windowSize = windowSize;
+        this.ttlMillis = ttlMillis;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+
+    /**
+     * Marks the table as stale until the written documents are searchable.
+     */
+    public void invalidate() {
+        staleUntil = Math.max(staleUntil, System.currentTimeMillis() + refreshIntervalMillis);
+    }
+
+    /**
+     * Called after an explicit refresh, which makes every write so far searchable.
+     */
+    public void refreshed() {
+        staleUntil = Math.min(staleUntil, System.currentTimeMillis());
+    }
+
+    public boolean isAvailable(final boolean canonical) {
+        final Snapshot current = snapshot;
+        return current != null && current.canonical == canonical && current.builtAt >= staleUntil
+                && System.currentTimeMillis() - current.builtAt < ttlMillis;
+    }
+
+    /**
+     * Rebuilds the table on the executor if it is unavailable and the last write is searchable.
+     */
+    public void buildAsync(final Client client, final String index, final String type, final boolean canonical,
+            final Executor executor) {
+        if (isAvailable(canonical) || System.currentTimeMillis() < staleUntil || !building.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    build(client, index, type, canonical);
+                } catch (final Exception e) {
+                    // the table stays unavailable and the next request retries.
+                } finally {
+                    building.set(false);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            building.set(false);
+        }
+    }
+
+    public void build(final Client client, final String index, final String type, final boolean canonical) {
+        final long startedAt = System.currentTimeMillis();
+        final Map<String, PriorityQueue<ScoredItem>> queues = new HashMap<>();
+        final Map<String, Long> totals = new HashMap<>();
+
+        SearchResponse response =
+                client.prepareSearch(index).setTypes(type).setQuery(QueryBuilders.matchAllQuery()).addSort(SortBuilders.fieldSort("_doc"))
+                        .setSize(1000).setScroll(TimeValue.timeValueMinutes(1)).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+        String scrollId = response.getScrollId();
+        try {
+            while (response.getHits().getHits().length > 0) {
+                for (final SearchHit hit : response.getHits().getHits()) {
+                    final Map<String, Object> source = hit.getSourceAsMap();
+                    final SuggestItem item = SuggestItem.parseSource(source);
+                    final Object scoreObj = source.get(FieldNames.SCORE);
+                    final float score =
+                            scoreObj instanceof Number ? ((Number) scoreObj).floatValue() : (float) SuggestItem.calculateScore(
+                                    item.getDocFreq(), item.getQueryFreq(), item.getUserBoost());
+                    final ScoredItem scoredItem = new ScoredItem(item, score);
+                    for (final String prefix : getPrefixes(item, canonical)) {
+                        totals.merge(prefix, 1L, Long::sum);
+                        final PriorityQueue<ScoredItem> queue = queues.computeIfAbsent(prefix, p -> new PriorityQueue<>());
+                        if (queue.size() < windowSize) {
+                            queue.add(scoredItem);
+                        } else if (queue.peek().score < score) {
+                            queue.poll();
+                            queue.add(scoredItem);
+                        }
+                    }
+                }
+                response =
+                        client.prepareSearchScroll(scrollId).setScroll(TimeValue.timeValueMinutes(1)).execute()
+                                .actionGet(SuggestConstants.ACTION_TIMEOUT);
+                scrollId = response.getScrollId();
+            }
+        } finally {
+            client.prepareClearScroll().addScrollId(scrollId).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+        }
+
+        final Map<String, Entry> newEntries = new HashMap<>(queues.size());
+        queues.forEach((prefix, queue) -> {
+            final ScoredItem[] items = new ScoredItem[queue.size()];
+            for (int i = items.length - 1; i >= 0; i--) {
+                items[i] = queue.poll();
+            }
+            final long total = totals.get(prefix);
+            newEntries.put(prefix, new Entry(items, total, total <= windowSize));
+        });
+        synchronized (this) {
+            if (snapshot == null || snapshot.builtAt <= startedAt) {
+                snapshot = new Snapshot(newEntries, startedAt, canonical);
+            }
+        }
+    }
+
+    public int getMaxPrefixLength() {
+        return maxPrefixLength;
+    }
+
+    public Entry get(final String prefix) {
+        final Snapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        final Entry entry = current.entries.get(prefix);
+        return entry == null ? Entry.EMPTY : entry;
+    }
+
+    protected Set<String> getPrefixes(final SuggestItem item, final boolean canonical) {
+        final Set<String> prefixes = new HashSet<>();
+        prefixes.add("");
+        if (item.getReadingNum() > 0) {
+            for (final String value : item.getReadingList(0)) {
+                final String reading = canonical ? ReadingCanonicalizer.canonicalize(value) : value;
+                for (int i = 1; i <= maxPrefixLength && i <= reading.length(); i++) {
+                    prefixes.add(reading.substring(0, i));
+                }
+            }
+        }
+        return prefixes;
+    }
+
+    protected static class Snapshot {
+        protected final Map<String, Entry> entries;
+
+        protected final long builtAt;
+
+        protected final boolean canonical;
+
+        protected Snapshot(final Map<String, Entry> entries, final long builtAt, final boolean canonical) {
+            this.entries = entries;
+            this.builtAt = builtAt;
+            this.canonical = canonical;
+        }
+    }
+
+    public static class Entry {
+        protected static final Entry EMPTY = new Entry(new ScoredItem[0], 0, true);
+
+        protected final ScoredItem[] items;
+
+        protected final long total;
+
+        protected final boolean complete;
+
+        protected Entry(final ScoredItem[] items, final long total, final boolean complete) {
+            this.items = items;
+            this.total = total;
+            this.complete = complete;
+        }
+
+        public List<ScoredItem> getItems() {
+            return Arrays.asList(items);
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+
+    public static class ScoredItem implements Comparable<ScoredItem> {
+        protected final SuggestItem item;
+
+        protected final float score;
+
+        protected ScoredItem(final SuggestItem item, final float score) {
+            this.item = item;
+            this.score = score;
+        }
+
+        public SuggestItem getItem() {
+            return item;
+        }
+
+        public float getScore() {
+            return score;
+        }
+
+        @Override
+        public int compareTo(final ScoredItem o) {
+            return Float.compare(score, o.score);
+        }
+    }
+}
@@ -3,17 +3,32 @@ package org.codelibs.fess.suggest.request.suggest;
 import java.io.IOException;
 import java.lang.Character.UnicodeBlock;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+import org.codelibs.core.lang.StringUtil;
 import org.codelibs.fess.suggest.concurrent.Deferred;
 import org.codelibs.fess.suggest.constants.FieldNames;
 import org.codelibs.fess.suggest.constants.SuggestConstants;
+import org.codelibs.fess.suggest.converter.ReadingCanonicalizer;
 import org.codelibs.fess.suggest.converter.ReadingConverter;
 import org.codelibs.fess.suggest.entity.SuggestItem;
 import org.codelibs.fess.suggest.exception.SuggesterException;
 import org.codelibs.fess.suggest.normalizer.Normalizer;
 import org.codelibs.fess.suggest.request.Request;
+import org.codelibs.fess.suggest.util.SuggestUtil;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
@@ -28,9 +43,14 @@ import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.index.query.functionscore.FunctionScoreQueryBuilder;
 import org.elasticsearch.index.query.functionscore.ScoreFunctionBuilders;
 import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.metrics.cardinality.Cardinality;
+import org.elasticsearch.search.collapse.CollapseBuilder;
 import org.elasticsearch.search.sort.SortOrder;
 
 public class SuggestRequest extends Request<SuggestResponse> {
+    private static final String DEDUPE_COUNT_AGGREGATION = "dedupe_count";
+
     private String index = null;
 
     private String type = null;
@@ -61,6 +81,40 @@ public class SuggestRequest extends Request<SuggestResponse> {
 
     private boolean skipDuplicateWords = true;
 
+    private ElevateWordOverlay elevateWordOverlay;
+
+    private boolean rankMode = false;
+
+    private int rescoreWindowSize = 100;
+
+    private BooleanSupplier rankModeAvailable;
+
+    private boolean readingRouting = false;
+
+    private boolean canonicalReading = false;
+
+    private boolean collapseDuplicates = false;
+
+    private ShortPrefixTable shortPrefixTable;
+
+    private ExecutorService executor;
+
+    private NegativeResultCache negativeResultCache;
+
+    private SuggestSessionCache sessionCache;
+
+    private String sessionToken;
+
+    private String nextSessionToken;
+
+    private long conversionTookMs = 0;
+
+    private final List<List<String>> queryReadings = new ArrayList<>();
+
+    private final List<List<String>> queryClauses = new ArrayList<>();
+
+    private boolean prefixQuery = true;
+
     public void setIndex(final String index) {
         this.index = index;
     }
@@ -121,8 +175,59 @@ public class SuggestRequest extends Request<SuggestResponse> {
         this.languages.add(lang);
     }
 
+    public void setElevateWordOverlay(final ElevateWordOverlay elevateWordOverlay) {
+        this.elevateWordOverlay = elevateWordOverlay;
+    }
+
+    public void setRankMode(final boolean rankMode) {
+        this.rankMode = rankMode;
+    }
+
+    public void setRankModeAvailable(final BooleanSupplier rankModeAvailable) {
+        this.rankModeAvailable = rankModeAvailable;
+    }
+
+    public void setRescoreWindowSize(final int rescoreWindowSize) {
+        this.rescoreWindowSize = rescoreWindowSize;
+    }
+
+    public void setReadingRouting(final boolean readingRouting) {
+        this.readingRouting = readingRouting;
+    }
+
+    public void setCollapseDuplicates(final boolean collapseDuplicates) {
+        this.collapseDuplicates = collapseDuplicates;
+    }
+
+    public void setCanonicalReading(final boolean canonicalReading) {
+        this.canonicalReading = canonicalReading;
+    }
+
+    public void setShortPrefixTable(final ShortPrefixTable shortPrefixTable) {
+        this.shortPrefixTable = shortPrefixTable;
+    }
+
+    public void setExecutor(final ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public void setNegativeResultCache(final NegativeResultCache negativeResultCache) {
+        this.negativeResultCache = negativeResultCache;
+    }
+
+    public void setSessionCache(final SuggestSessionCache sessionCache) {
+        this.sessionCache = sessionCache;
+    }
+
+    public void setSessionToken(final String sessionToken) {
+        this.sessionToken = sessionToken;
+    }
+
     @Override
     protected String getValidationError() {
+        if (rankMode && rankModeAvailable != null && !rankModeAvailable.getAsBoolean()) {
+            return "Rank mode needs an index sorted on the stored score. Migrate to a new index with createNextIndex(true) first.";
+        }
         return null;
     }
 
@@ -133,18 +238,71 @@ public class SuggestRequest extends Request<SuggestResponse> {
             builder.setTypes(type);
         }
 
-        if (skipDuplicateWords) {
-            builder.setSize(size * 2);
-        } else {
-            builder.setSize(size);
-        }
+        final int fetchSize = skipDuplicateWords ? size * 2 : size;
 
         // set query.
         final QueryBuilder q = buildQuery(query);
+        roles.add(SuggestConstants.DEFAULT_ROLE);
+
+        if (shortPrefixTable != null) {
+            final SuggestResponse response = createShortPrefixResponse(fetchSize);
+            if (response != null) {
+                deferred.resolve(response);
+                return;
+            }
+        }
+
+        final boolean useNegativeCache = negativeResultCache != null && fetchSize > 0;
+        final String filterKey = (useNegativeCache || sessionCache != null) && !queryClauses.isEmpty() ? createFilterKey() : null;
+        if (filterKey != null && useNegativeCache && negativeResultCache.contains(filterKey, queryClauses, prefixQuery)) {
+            deferred.resolve(createResponse(index, 0, 0, new ArrayList<>(), false, prefixQuery));
+            return;
+        }
+
+        // a collapsed result keeps one document per word, which is not enough to refine locally.
+        final boolean collapse = skipDuplicateWords && collapseDuplicates;
+        final boolean useSession = filterKey != null && sessionCache != null && !collapse;
+        if (useSession && sessionToken != null) {
+            final SuggestSessionCache.Snapshot snapshot = sessionCache.get(sessionToken);
+            if (snapshot != null && snapshot.covers(filterKey, queryClauses, prefixQuery)) {
+                sessionCache.record(true);
+                deferred.resolve(createRefinedResponse(snapshot, filterKey));
+                return;
+            }
+        }
+        if (useSession) {
+            sessionCache.record(false);
+        }
+
+        if (readingRouting && !queryReadings.isEmpty()) {
+            final Set<String> routings = SuggestUtil.createRoutings(queryReadings.get(0));
+            if (!routings.isEmpty()) {
+                builder.setRouting(routings.toArray(new String[routings.size()]));
+            }
+        }
 
-        // set function score
-        final QueryBuilder queryBuilder = buildFunctionScoreQuery(query, q);
-        builder.addSort("_score", SortOrder.DESC);
+        final int hitsSize = collapse ? size : fetchSize;
+        final int searchSize = rankMode ? Math.max(hitsSize, rescoreWindowSize) : hitsSize;
+        final QueryBuilder queryBuilder;
+        if (rankMode) {
+            // documents are sorted by the precomputed score, so each shard can stop after the window.
+            builder.setSize(searchSize);
+            queryBuilder = QueryBuilders.constantScoreQuery(q);
+            builder.addSort(FieldNames.SCORE, SortOrder.DESC);
+            builder.setTrackTotalHits(false);
+        } else {
+            builder.setSize(searchSize);
+            // set function score
+            queryBuilder = buildFunctionScoreQuery(query, q);
+            builder.addSort("_score", SortOrder.DESC);
+        }
+
+        if (collapse) {
+            builder.setCollapse(new CollapseBuilder(FieldNames.DEDUPE_KEY));
+            if (!rankMode) {
+                builder.addAggregation(AggregationBuilders.cardinality(DEDUPE_COUNT_AGGREGATION).field(FieldNames.DEDUPE_KEY));
+            }
+        }
 
         //set filter query.
         final List<QueryBuilder> filterList = new ArrayList<>(10);
@@ -152,7 +310,6 @@ public class SuggestRequest extends Request<SuggestResponse> {
             filterList.add(buildFilterQuery(FieldNames.TAGS, tags));
         }
 
-        roles.add(SuggestConstants.DEFAULT_ROLE);
         if (!roles.isEmpty()) {
             filterList.add(buildFilterQuery(FieldNames.ROLES, roles));
         }
@@ -165,6 +322,10 @@ public class SuggestRequest extends Request<SuggestResponse> {
             filterList.add(buildFilterQuery(FieldNames.KINDS, kinds));
         }
 
+        if (elevateWordOverlay != null) {
+            filterList.add(QueryBuilders.boolQuery().mustNot(buildUserOnlyQuery()));
+        }
+
         if (filterList.size() > 0) {
             final BoolQueryBuilder boolQueryBuilder = QueryBuilders.boolQuery();
             boolQueryBuilder.must(queryBuilder);
@@ -180,6 +341,18 @@ public class SuggestRequest extends Request<SuggestResponse> {
                 if (searchResponse.getFailedShards() > 0) {
                     deferred.reject(new SuggesterException("Search failure. Failed shards num:" + searchResponse.getFailedShards()));
                 } else {
+                    final SearchHit[] hits = searchResponse.getHits().getHits();
+                    if (filterKey != null && useNegativeCache && hits.length == 0) {
+                        negativeResultCache.put(filterKey, queryClauses, prefixQuery);
+                    }
+                    if (useSession && hits.length < searchSize) {
+                        // every matching document was fetched, so the next keystroke can be refined locally.
+                        final List<SuggestItem> items = new ArrayList<>(hits.length);
+                        for (final SearchHit hit : hits) {
+                            items.add(SuggestItem.parseSource(hit.getSourceAsMap()));
+                        }
+                        nextSessionToken = sessionCache.put(filterKey, queryClauses, prefixQuery, items);
+                    }
                     deferred.resolve(createResponse(searchResponse));
                 }
             }
@@ -201,41 +374,45 @@ public class SuggestRequest extends Request<SuggestResponse> {
             if (Strings.isNullOrEmpty(q)) {
                 queryBuilder = QueryBuilders.matchAllQuery();
             } else {
-                final boolean prefixQuery = !q.endsWith(" ") && !q.endsWith("　");
-                List<String> readingList = new ArrayList<>();
+                prefixQuery = !q.endsWith(" ") && !q.endsWith("　");
 
                 final String[] langsArray = languages.toArray(new String[languages.size()]);
 
                 final BoolQueryBuilder boolQueryBuilder = QueryBuilders.boolQuery();
                 final String[] queries = q.replaceAll("　", " ").replaceAll(" +", " ").trim().split(" ");
+                final long conversionStart = System.nanoTime();
+                final List<List<String>> termReadings = convertTerms(queries, langsArray);
+                conversionTookMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - conversionStart);
                 for (int i = 0; i < queries.length; i++) {
                     final String fieldName = FieldNames.READING_PREFIX + i;
+                    final List<String> readingList = termReadings.get(i);
 
-                    final String query;
-                    if (normalizer == null) {
-                        query = queries[i];
-                    } else {
-                        query = normalizer.normalize(queries[i], langsArray);
-                    }
-
-                    if (readingConverter == null) {
-                        readingList.add(query);
-                    } else {
-                        //TODO locale
-                        readingList = readingConverter.convert(query, langsArray);
-                    }
-
+                    final boolean prefix = i + 1 == queries.length && prefixQuery;
                     final BoolQueryBuilder readingQueryBuilder = QueryBuilders.boolQuery().minimumShouldMatch(1);
-                    final int readingNum = readingList.size();
-                    for (int readingCount = 0; readingCount < readingNum; readingCount++) {
-                        final String reading = readingList.get(readingCount);
-                        if (i + 1 == queries.length && prefixQuery) {
-                            readingQueryBuilder.should(QueryBuilders.prefixQuery(fieldName, reading));
-                        } else {
-                            readingQueryBuilder.should(QueryBuilders.termQuery(fieldName, reading));
+                    if (canonicalReading) {
+                        final String canonicalFieldName = FieldNames.CANONICAL_READING_PREFIX + i;
+                        final Set<String> keys = ReadingCanonicalizer.canonicalize(readingList, prefix);
+                        queryClauses.add(new ArrayList<>(keys));
+                        for (final String key : keys) {
+                            if (prefix) {
+                                readingQueryBuilder.should(QueryBuilders.prefixQuery(canonicalFieldName, key));
+                            } else {
+                                readingQueryBuilder.should(QueryBuilders.termQuery(canonicalFieldName, key));
+                            }
+                        }
+                    } else {
+                        queryClauses.add(readingList);
+                        final int readingNum = readingList.size();
+                        for (int readingCount = 0; readingCount < readingNum; readingCount++) {
+                            final String reading = readingList.get(readingCount);
+                            if (prefix) {
+                                readingQueryBuilder.should(QueryBuilders.prefixQuery(fieldName, reading));
+                            } else {
+                                readingQueryBuilder.should(QueryBuilders.termQuery(fieldName, reading));
+                            }
                         }
                     }
-                    readingList.clear();
+                    queryReadings.add(readingList);
                     boolQueryBuilder.must(readingQueryBuilder);
                 }
                 queryBuilder = boolQueryBuilder;
@@ -247,12 +424,83 @@ public class SuggestRequest extends Request<SuggestResponse> {
         }
     }
 
+    protected String createFilterKey() {
+        return String.join("\u0000", index, String.valueOf(type), String.valueOf(canonicalReading), tags.toString(), roles.toString(),
+                fields.toString(), kinds.toString());
+    }
+
+    protected List<List<String>> convertTerms(final String[] queries, final String[] langsArray) throws IOException {
+        final List<List<String>> termReadings = new ArrayList<>(queries.length);
+        if (executor == null || queries.length < 2) {
+            for (final String query : queries) {
+                termReadings.add(convertTerm(query, langsArray));
+            }
+            return termReadings;
+        }
+
+        // each term may need several _analyze calls, so terms are converted concurrently.
+        final List<FutureTask<List<String>>> tasks = new ArrayList<>(queries.length);
+        for (final String query : queries) {
+            tasks.add(new FutureTask<>(() -> convertTerm(query, langsArray)));
+        }
+        for (int i = 1; i < tasks.size(); i++) {
+            try {
+                executor.execute(tasks.get(i));
+            } catch (final RejectedExecutionException e) {
+                // runs on the caller below
+            }
+        }
+        try {
+            // terms not yet picked up by the pool run on the caller, so indexing jobs filling the pool cannot hold this up.
+            tasks.forEach(FutureTask::run);
+            for (final FutureTask<List<String>> task : tasks) {
+                termReadings.add(task.get(SuggestConstants.ACTION_TIMEOUT, TimeUnit.MILLISECONDS));
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SuggesterException("Interrupted while converting query terms.", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new SuggesterException("Failed to convert query terms.", e.getCause());
+        } catch (final TimeoutException e) {
+            throw new SuggesterException("Timed out converting query terms.", e);
+        } finally {
+            tasks.forEach(task -> task.cancel(true));
+        }
+        return termReadings;
+    }
+
+    protected List<String> convertTerm(final String term, final String[] langsArray) throws IOException {
+        final String query;
+        if (normalizer == null) {
+            query = term;
+        } else {
+            query = normalizer.normalize(term, langsArray);
+        }
+
+        if (readingConverter == null) {
+            final List<String> readingList = new ArrayList<>(1);
+            readingList.add(query);
+            return readingList;
+        }
+        //TODO locale
+        return new ArrayList<>(readingConverter.convert(query, langsArray));
+    }
+
     protected QueryBuilder buildFilterQuery(final String fieldName, final List<String> words) {
         final BoolQueryBuilder boolQueryBuilder = QueryBuilders.boolQuery().minimumShouldMatch(1);
         words.stream().forEach(word -> boolQueryBuilder.should(QueryBuilders.termQuery(fieldName, word)));
         return boolQueryBuilder;
     }
 
+    protected QueryBuilder buildUserOnlyQuery() {
+        return QueryBuilders.boolQuery().filter(QueryBuilders.termQuery(FieldNames.KINDS, SuggestItem.Kind.USER.toString()))
+                .mustNot(QueryBuilders.termQuery(FieldNames.KINDS, SuggestItem.Kind.DOCUMENT.toString()))
+                .mustNot(QueryBuilders.termQuery(FieldNames.KINDS, SuggestItem.Kind.QUERY.toString()));
+    }
+
     protected QueryBuilder buildFunctionScoreQuery(final String query, final QueryBuilder queryBuilder) {
 
         final List<FunctionScoreQueryBuilder.FilterFunctionBuilder> flist = new ArrayList<>();
@@ -278,13 +526,93 @@ public class SuggestRequest extends Request<SuggestResponse> {
         return functionScoreQueryBuilder;
     }
 
+    /**
+     * The table ranks by the stored score, so it only serves rank mode requests on a score sorted index.
+     */
+    protected SuggestResponse createShortPrefixResponse(final int fetchSize) {
+        if (!rankMode || rankModeAvailable == null || !rankModeAvailable.getAsBoolean()) {
+            return null;
+        }
+        if (!shortPrefixTable.isAvailable(canonicalReading) || queryClauses.size() > 1 || !queryClauses.isEmpty() && !prefixQuery) {
+            return null;
+        }
+
+        final long start = System.currentTimeMillis();
+        final boolean prefixScore = isSingleWordQuery(query) && !isHiraganaQuery(query);
+        // the clauses hold canonical keys in canonical reading mode, as the table does.
+        final List<String> prefixes = queryClauses.isEmpty() ? Collections.singletonList(StringUtil.EMPTY) : queryClauses.get(0);
+        final Map<String, Candidate> candidateMap = new LinkedHashMap<>();
+        long estimatedTotal = 0;
+        for (final String prefix : prefixes) {
+            if (prefix.length() > shortPrefixTable.getMaxPrefixLength()) {
+                return null;
+            }
+            final ShortPrefixTable.Entry entry = shortPrefixTable.get(prefix);
+            int accepted = 0;
+            int servedByOverlay = 0;
+            for (final ShortPrefixTable.ScoredItem scoredItem : entry.getItems()) {
+                final SuggestItem item = scoredItem.getItem();
+                if (isServedByOverlay(item)) {
+                    servedByOverlay++;
+                    continue;
+                }
+                if (!isAcceptable(item)) {
+                    continue;
+                }
+                accepted++;
+                final float score =
+                        prefixScore && item.getText().startsWith(query) ? scoredItem.getScore() * prefixMatchWeight : scoredItem
+                                .getScore();
+                candidateMap.putIfAbsent(item.getId(), new Candidate(item.getId(), item.getText(), score, null, item));
+            }
+            if (!entry.isComplete()) {
+                if (accepted < fetchSize) {
+                    // filtered out too many entries to be sure about the top words.
+                    return null;
+                }
+                // only the top entries are kept, so the rest is assumed to be filtered in the same ratio.
+                final int scanned = entry.getItems().size() - servedByOverlay;
+                estimatedTotal = Math.max(estimatedTotal, scanned > 0 ? (entry.getTotal() - servedByOverlay) * accepted / scanned : 0);
+            }
+        }
+
+        // exact when every entry is complete, approximate otherwise.
+        final long total = Math.max(candidateMap.size(), estimatedTotal);
+        return createResponse(index, System.currentTimeMillis() - start, total, new ArrayList<>(candidateMap.values()), true,
+                prefixScore);
+    }
+
+    protected SuggestResponse createRefinedResponse(final SuggestSessionCache.Snapshot snapshot, final String filterKey) {
+        final long start = System.currentTimeMillis();
+        final boolean prefixScore = isSingleWordQuery(query) && !isHiraganaQuery(query);
+        final ReadingClauses clauses = new ReadingClauses(queryClauses, prefixQuery);
+        final List<SuggestItem> refinedItems = new ArrayList<>();
+        final List<Candidate> candidates = new ArrayList<>();
+        for (final SuggestItem item : snapshot.getItems()) {
+            if (isServedByOverlay(item) || !(canonicalReading ? clauses.matches(createCanonicalReadings(item)) : clauses.matches(item))) {
+                continue;
+            }
+            refinedItems.add(item);
+            float score = (float) SuggestItem.calculateScore(item.getDocFreq(), item.getQueryFreq(), item.getUserBoost());
+            if (prefixScore && item.getText().startsWith(query)) {
+                score *= prefixMatchWeight;
+            }
+            candidates.add(new Candidate(item.getId(), item.getText(), score, null, item));
+        }
+        nextSessionToken = sessionCache.put(filterKey, queryClauses, prefixQuery, refinedItems);
+        return createResponse(index, System.currentTimeMillis() - start, refinedItems.size(), candidates, true, prefixScore);
+    }
+
+    private String[][] createCanonicalReadings(final SuggestItem item) {
+        final String[][] canonicalReadings = new String[item.getReadingNum()][];
+        for (int i = 0; i < canonicalReadings.length; i++) {
+            canonicalReadings[i] = SuggestItem.createCanonicalReadings(item.getReadingList(i));
+        }
+        return canonicalReadings;
+    }
+
     protected SuggestResponse createResponse(final SearchResponse searchResponse) {
         final SearchHit[] hits = searchResponse.getHits().getHits();
-        final List<String> words = new ArrayList<>();
-        final List<String> firstWords = new ArrayList<>();
-        final List<String> secondWords = new ArrayList<>();
-        final List<SuggestItem> firstItems = new ArrayList<>();
-        final List<SuggestItem> secondItems = new ArrayList<>();
 
         final String index;
         if (hits.length > 0) {
@@ -293,19 +621,56 @@ public class SuggestRequest extends Request<SuggestResponse> {
             index = SuggestConstants.EMPTY_STRING;
         }
 
+        final boolean prefixScore = isSingleWordQuery(query) && !isHiraganaQuery(query);
+        final List<Candidate> candidates = new ArrayList<>(hits.length);
+        for (final SearchHit hit : hits) {
+            final Map<String, Object> source = hit.getSourceAsMap();
+            final String text = source.get(FieldNames.TEXT).toString();
+            final float score;
+            if (rankMode) {
+                final Object[] sortValues = hit.getSortValues();
+                final float rank = sortValues.length > 0 && sortValues[0] instanceof Number ? ((Number) sortValues[0]).floatValue() : 0;
+                score = prefixScore && text.startsWith(query) ? rank * prefixMatchWeight : rank;
+            } else {
+                score = hit.getScore();
+            }
+            candidates.add(new Candidate(hit.getId(), text, score, source, null));
+        }
+        long totalHits = searchResponse.getHits().getTotalHits();
+        if (searchResponse.getAggregations() != null) {
+            final Cardinality dedupeCount = searchResponse.getAggregations().get(DEDUPE_COUNT_AGGREGATION);
+            if (dedupeCount != null) {
+                totalHits = dedupeCount.getValue();
+            }
+        }
+        // hits are not counted in rank mode, so the total is only the number of returned documents.
+        return createResponse(index, searchResponse.getTook().getMillis(), totalHits < 0 ? hits.length : totalHits, candidates, rankMode,
+                prefixScore);
+    }
+
+    protected SuggestResponse createResponse(final String index, final long tookMs, final long total, final List<Candidate> candidates,
+            final boolean sort, final boolean prefixScore) {
+        final List<String> words = new ArrayList<>();
+        final List<String> firstWords = new ArrayList<>();
+        final List<String> secondWords = new ArrayList<>();
+        final List<SuggestItem> firstItems = new ArrayList<>();
+        final List<SuggestItem> secondItems = new ArrayList<>();
+        final Set<String> dedupeKeys = new HashSet<>();
+
+        final int overlayNum = mergeElevateWords(candidates, prefixScore);
+        if (sort || elevateWordOverlay != null) {
+            candidates.sort((c1, c2) -> Float.compare(c2.score, c1.score));
+        }
+
         final boolean singleWordQuery = isSingleWordQuery(query);
         final boolean hiraganaQuery = isHiraganaQuery(query);
-        for (int i = 0; i < hits.length && words.size() < size; i++) {
-            final SearchHit hit = hits[i];
+        for (int i = 0; i < candidates.size() && words.size() < size; i++) {
+            final Candidate candidate = candidates.get(i);
 
-            final Map<String, Object> source = hit.getSourceAsMap();
-            final String text = source.get(FieldNames.TEXT).toString();
-            if (skipDuplicateWords) {
-                final String duplicateCheckStr = text.replace(" ", "");
-                if (words.stream().map(word -> word.replace(" ", "")).anyMatch(word -> word.equals(duplicateCheckStr))) {
-                    // skip duplicate word.
-                    continue;
-                }
+            final String text = candidate.text;
+            if (skipDuplicateWords && !dedupeKeys.add(SuggestItem.createDedupeKey(text))) {
+                // skip duplicate word.
+                continue;
             }
 
             words.add(text);
@@ -317,7 +682,7 @@ public class SuggestRequest extends Request<SuggestResponse> {
             }
 
             if (suggestDetail) {
-                final SuggestItem item = SuggestItem.parseSource(source);
+                final SuggestItem item = candidate.toSuggestItem();
                 if (isFirstWords) {
                     firstItems.add(item);
                 } else {
@@ -327,8 +692,61 @@ public class SuggestRequest extends Request<SuggestResponse> {
         }
         firstWords.addAll(secondWords);
         firstItems.addAll(secondItems);
-        return new SuggestResponse(index, searchResponse.getTook().getMillis(), firstWords, searchResponse.getHits().getTotalHits(),
-                firstItems);
+        return new SuggestResponse(index, tookMs, conversionTookMs, firstWords, total + overlayNum, firstItems, nextSessionToken);
+    }
+
+    protected int mergeElevateWords(final List<Candidate> candidates, final boolean prefixScore) {
+        if (elevateWordOverlay == null) {
+            return 0;
+        }
+
+        // keyed by text, which also matches documents of an index with legacy ids.
+        final Map<String, Candidate> candidateMap = new HashMap<>();
+        candidates.forEach(candidate -> candidateMap.put(candidate.text, candidate));
+        int overlayNum = 0;
+        for (final SuggestItem elevateItem : elevateWordOverlay.lookup(queryReadings, prefixQuery)) {
+            if (!isAcceptable(elevateItem)) {
+                continue;
+            }
+            final Candidate candidate = candidateMap.get(elevateItem.getText());
+            if (candidate != null) {
+                final float indexedBoost;
+                if (candidate.item != null) {
+                    indexedBoost = candidate.item.getUserBoost();
+                } else {
+                    final Object userBoost = candidate.source.get(FieldNames.USER_BOOST);
+                    indexedBoost = userBoost == null ? 1.0f : Float.parseFloat(userBoost.toString());
+                }
+                candidate.score = candidate.score / indexedBoost * elevateItem.getUserBoost();
+                candidate.userBoost = elevateItem.getUserBoost();
+            } else {
+                float score =
+                        (float) (Math.log10(elevateItem.getDocFreq() + 2) * Math.log10(elevateItem.getQueryFreq() + 2) * elevateItem
+                                .getUserBoost());
+                if (prefixScore && elevateItem.getText().startsWith(query)) {
+                    score *= prefixMatchWeight;
+                }
+                candidates.add(new Candidate(elevateItem.getId(), elevateItem.getText(), score, null, elevateItem));
+                overlayNum++;
+            }
+        }
+        return overlayNum;
+    }
+
+    /**
+     * Elevate words are indexed as user items, which the overlay already serves, so such items are skipped to not count
+     * them twice. Items that are also documents or queries keep their frequencies and are merged with the overlay instead.
+     */
+    protected boolean isServedByOverlay(final SuggestItem item) {
+        if (elevateWordOverlay == null) {
+            return false;
+        }
+        return item.hasOnlyKind(SuggestItem.Kind.USER);
+    }
+
+    protected boolean isAcceptable(final SuggestItem item) {
+        return (tags.isEmpty() || item.hasAnyTag(tags)) && (roles.isEmpty() || item.hasAnyRole(roles))
+                && (fields.isEmpty() || item.hasAnyField(fields)) && (kinds.isEmpty() || item.hasAnyKind(kinds));
     }
 
     protected boolean isFirstWordMatching(final boolean singleWordQuery, final boolean hiraganaQuery, final String text) {
@@ -344,4 +762,42 @@ public class SuggestRequest extends Request<SuggestResponse> {
     protected boolean isHiraganaQuery(final String query) {
         return query.matches("^[\\u3040-\\u309F]+$");
     }
+
+    protected static class Candidate {
+        protected final String id;
+        protected final String text;
+        protected final Map<String, Object> source;
+        protected final SuggestItem item;
+        protected float score;
+        protected Float userBoost;
+
+        protected Candidate(final String id, final String text, final float score, final Map<String, Object> source,
+                final SuggestItem item) {
+            this.id = id;
+            this.text = text;
+            this.score = score;
+            this.source = source;
+            this.item = item;
+        }
+
+        protected SuggestItem toSuggestItem() {
+            if (item != null) {
+                if (userBoost == null) {
+                    return item;
+                }
+                final SuggestItem copied =
+                        new SuggestItem(new String[] { item.getText() }, item.getReadings(), item.getFields(), item.getDocFreq(),
+                                item.getQueryFreq(), userBoost, item.getTags(), item.getRoles(), item.getLanguages(),
+                                SuggestItem.Kind.USER);
+                copied.setKinds(item.getKinds());
+                copied.setTimestampMillis(item.getTimestampMillis());
+                return copied;
+            }
+            final SuggestItem parsed = SuggestItem.parseSource(source);
+            if (userBoost != null) {
+                parsed.setUserBoost(userBoost);
+            }
+            return parsed;
+        }
+    }
 }
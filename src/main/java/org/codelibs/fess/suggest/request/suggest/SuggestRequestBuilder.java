@@ -1,5 +1,8 @@
 package org.codelibs.fess.suggest.request.suggest;
 
+import java.util.concurrent.ExecutorService;
+import java.util.function.BooleanSupplier;
+
 import org.codelibs.fess.suggest.converter.ReadingConverter;
 import org.codelibs.fess.suggest.normalizer.Normalizer;
 import org.codelibs.fess.suggest.request.RequestBuilder;
@@ -76,4 +79,70 @@ public class SuggestRequestBuilder extends RequestBuilder<SuggestRequest, Sugges
         request.addLang(lang);
         return this;
     }
+
+    /**
+     * Sorts on the score stored in each document instead of scoring at query time.
+     * The total of the response is approximate in this mode: hits are not counted, so it is the number of returned documents.
+     * The prefix match weight is applied only within the rescore window.
+     * Indices created before the score was stored have to be migrated with createNextIndex(true) first.
+     */
+    public SuggestRequestBuilder setRankMode(final boolean rankMode) {
+        request.setRankMode(rankMode);
+        return this;
+    }
+
+    public SuggestRequestBuilder setRankModeAvailable(final BooleanSupplier rankModeAvailable) {
+        request.setRankModeAvailable(rankModeAvailable);
+        return this;
+    }
+
+    public SuggestRequestBuilder setRescoreWindowSize(final int rescoreWindowSize) {
+        request.setRescoreWindowSize(rescoreWindowSize);
+        return this;
+    }
+
+    public SuggestRequestBuilder setReadingRouting(final boolean readingRouting) {
+        request.setReadingRouting(readingRouting);
+        return this;
+    }
+
+    public SuggestRequestBuilder setCollapseDuplicates(final boolean collapseDuplicates) {
+        request.setCollapseDuplicates(collapseDuplicates);
+        return this;
+    }
+
+    public SuggestRequestBuilder setCanonicalReading(final boolean canonicalReading) {
+        request.setCanonicalReading(canonicalReading);
+        return this;
+    }
+
+    public SuggestRequestBuilder setExecutor(final ExecutorService executor) {
+        request.setExecutor(executor);
+        return this;
+    }
+
+    public SuggestRequestBuilder setNegativeResultCache(final NegativeResultCache negativeResultCache) {
+        request.setNegativeResultCache(negativeResultCache);
+        return this;
+    }
+
+    public SuggestRequestBuilder setSessionCache(final SuggestSessionCache sessionCache) {
+        request.setSessionCache(sessionCache);
+        return this;
+    }
+
+    public SuggestRequestBuilder setSessionToken(final String sessionToken) {
+        request.setSessionToken(sessionToken);
+        return this;
+    }
+
+    public SuggestRequestBuilder setShortPrefixTable(final ShortPrefixTable shortPrefixTable) {
+        request.setShortPrefixTable(shortPrefixTable);
+        return this;
+    }
+
+    public SuggestRequestBuilder setElevateWordOverlay(final ElevateWordOverlay elevateWordOverlay) {
+        request.setElevateWordOverlay(elevateWordOverlay);
+        return this;
+    }
 }
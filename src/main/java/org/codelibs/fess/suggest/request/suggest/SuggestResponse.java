@@ -10,6 +10,8 @@ public class SuggestResponse implements Response {
 
     protected final long tookMs;
 
+    protected final long conversionTookMs;
+
     protected final List<String> words;
 
     protected final int num;
@@ -18,13 +20,27 @@ public class SuggestResponse implements Response {
 
     protected final List<SuggestItem> items;
 
+    protected final String sessionToken;
+
     public SuggestResponse(final String index, final long tookMs, final List<String> words, final long total, final List<SuggestItem> items) {
+        this(index, tookMs, 0, words, total, items);
+    }
+
+    public SuggestResponse(final String index, final long tookMs, final long conversionTookMs, final List<String> words, final long total,
+            final List<SuggestItem> items) {
+        this(index, tookMs, conversionTookMs, words, total, items, null);
+    }
+
+    public SuggestResponse(final String index, final long tookMs, final long conversionTookMs, final List<String> words, final long total,
+            final List<SuggestItem> items, final String sessionToken) {
         this.index = index;
         this.tookMs = tookMs;
+        this.conversionTookMs = conversionTookMs;
         this.words = words;
         this.num = words.size();
         this.total = total;
         this.items = items;
+        this.sessionToken = sessionToken;
     }
 
     public String getIndex() {
@@ -35,6 +51,10 @@ public class SuggestResponse implements Response {
         return tookMs;
     }
 
+    public long getConversionTookMs() {
+        return conversionTookMs;
+    }
+
     public List<String> getWords() {
         return words;
     }
@@ -50,4 +70,8 @@ public class SuggestResponse implements Response {
     public List<SuggestItem> getItems() {
         return items;
     }
+
+    public String getSessionToken() {
+        return sessionToken;
+    }
 }
@@ -0,0 +1,109 @@
+package org.codelibs.fess.suggest.request.suggest;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.codelibs.fess.suggest.entity.SuggestItem;
+
+/**
+ * Complete suggest results kept under an opaque token, so that the next keystroke of the same user can be answered by
+ * filtering them locally.
+ */
+public class SuggestSessionCache {
+    protected final int maxSize;
+
+    protected final long ttlMillis;
+
+    protected final Map<String, Snapshot> snapshots = new LinkedHashMap<>(16, 0.75f, true);
+
+    protected final LongAdder requestCount = new LongAdder();
+
+    protected final LongAdder refinedCount = new LongAdder();
+
+    public SuggestSessionCache(final int maxSize, final long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public String put(final String filterKey, final List<List<String>> clauses, final boolean prefix, final List<SuggestItem> items) {
+        final String token = UUID.randomUUID().toString();
+        final Snapshot snapshot =
+                new Snapshot(filterKey, new ReadingClauses(clauses, prefix), items, System.currentTimeMillis() + ttlMillis);
+        synchronized (snapshots) {
+            snapshots.put(token, snapshot);
+            if (snapshots.size() > maxSize) {
+                final Iterator<Snapshot> it = snapshots.values().iterator();
+                it.next();
+                it.remove();
+            }
+        }
+        return token;
+    }
+
+    public Snapshot get(final String token) {
+        synchronized (snapshots) {
+            final Snapshot snapshot = snapshots.get(token);
+            if (snapshot != null && snapshot.expiresAt < System.currentTimeMillis()) {
+                snapshots.remove(token);
+                return null;
+            }
+            return snapshot;
+        }
+    }
+
+    public void clear() {
+        synchronized (snapshots) {
+            snapshots.clear();
+        }
+    }
+
+    public void record(final boolean refined) {
+        requestCount.increment();
+        if (refined) {
+            refinedCount.increment();
+        }
+    }
+
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    public long getRefinedCount() {
+        return refinedCount.sum();
+    }
+
+    public double getRefinedRatio() {
+        final long requests = requestCount.sum();
+        return requests == 0 ? 0 : (double) refinedCount.sum() / requests;
+    }
+
+    public static class Snapshot {
+        protected final String filterKey;
+
+        protected final ReadingClauses clauses;
+
+        protected final List<SuggestItem> items;
+
+        protected final long expiresAt;
+
+        protected Snapshot(final String filterKey, final ReadingClauses clauses, final List<SuggestItem> items, final long expiresAt) {
+            this.filterKey = filterKey;
+            this.clauses = clauses;
+            this.items = Collections.unmodifiableList(items);
+            this.expiresAt = expiresAt;
+        }
+
+        public boolean covers(final String filterKey, final List<List<String>> queryClauses, final boolean queryPrefix) {
+            return this.filterKey.equals(filterKey) && clauses.contains(queryClauses, queryPrefix);
+        }
+
+        public List<SuggestItem> getItems() {
+            return items;
+        }
+    }
+}
@@ -4,46 +4,72 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.time.LocalDateTime;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import org.codelibs.core.CoreLibConstants;
 import org.codelibs.core.lang.StringUtil;
 import org.codelibs.fess.suggest.constants.FieldNames;
 import org.codelibs.fess.suggest.constants.SuggestConstants;
 import org.codelibs.fess.suggest.exception.SuggestSettingsException;
-import org.codelibs.fess.suggest.util.SuggestUtil;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.ResourceAlreadyExistsException;
+import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentType;
-import org.elasticsearch.common.xcontent.json.JsonXContent;
 import org.elasticsearch.index.IndexNotFoundException;
+import org.elasticsearch.index.engine.VersionConflictEngineException;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.SearchHit;
 
 public class ArraySettings {
+    protected static final String ARRAY_INDEX_SUFFIX = "_array";
+    protected static final String ARRAY_TYPE = "array";
+    protected static final String SETTINGS_ID_FIELD = "settingsId";
+    protected static final String KIND_FIELD = "kind";
+    protected static final String VALUES_FIELD = "values";
+    protected static final int MAX_UPDATE_RETRY = 10;
+
+    protected final SuggestSettings settings;
     protected final Client client;
     protected final String arraySettingsIndexName;
     protected final String settingsId;
 
+    protected final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+
     private static final Base64.Encoder encoder = Base64.getEncoder();
 
-    protected ArraySettings(final Client client, final String settingsIndexName, final String settingsId) {
+    protected ArraySettings(final SuggestSettings settings, final Client client, final String settingsIndexName, final String settingsId) {
+        this.settings = settings;
         this.client = client;
         this.arraySettingsIndexName = createArraySettingsIndexName(settingsIndexName);
         this.settingsId = settingsId;
-        createMappingIfEmpty(arraySettingsIndexName, settingsId, client);
+        createIndexIfNothing();
+        migrateLegacyIndex(arraySettingsIndexName, settingsId);
     }
 
     public String[] get(final String key) {
-        final Map<String, Object> sourceArray[] = getFromArrayIndex(arraySettingsIndexName, settingsId, key);
+        final Map<String, Object> sourceArray[] = getCachedArray(key);
 
         final String[] valueArray = new String[sourceArray.length];
         for (int i = 0; i < valueArray.length; i++) {
@@ -56,12 +82,17 @@ public class ArraySettings {
     }
 
     public void add(final String key, final Object value) {
-        final Map<String, Object> source = new HashMap<>();
-        source.put(FieldNames.ARRAY_KEY, key);
-        source.put(FieldNames.ARRAY_VALUE, value);
-        source.put(FieldNames.TIMESTAMP, LocalDateTime.now());
+        addToArrayIndex(arraySettingsIndexName, settingsId, createId(key, value), createSource(key, value));
+    }
 
-        addToArrayIndex(arraySettingsIndexName, settingsId, createId(key, value), source);
+    public void addAll(final String key, final Collection<?> values) {
+        addAllToArrayIndex(arraySettingsIndexName, settingsId, key,
+                values.stream().map(value -> createSource(key, value)).collect(Collectors.toList()));
+    }
+
+    public void replaceAll(final String key, final Collection<?> values) {
+        replaceArrayIndex(arraySettingsIndexName, settingsId, key,
+                values.stream().map(value -> createSource(key, value)).collect(Collectors.toList()));
     }
 
     public void delete(final String key) {
@@ -69,126 +100,302 @@ public class ArraySettings {
     }
 
     public void delete(final String key, final String value) {
-        deleteFromArray(arraySettingsIndexName, settingsId, createId(key, value));
+        deleteFromArray(arraySettingsIndexName, settingsId, key, createId(key, value));
+    }
+
+    public void deleteAll(final String key, final Collection<String> values) {
+        deleteAllFromArray(arraySettingsIndexName, settingsId, key,
+                values.stream().map(value -> createId(key, value)).collect(Collectors.toSet()));
+    }
+
+    protected Map<String, Object> createSource(final String key, final Object value) {
+        final Map<String, Object> source = new HashMap<>();
+        source.put(FieldNames.ARRAY_KEY, key);
+        source.put(FieldNames.ARRAY_VALUE, value);
+        source.put(FieldNames.TIMESTAMP, LocalDateTime.now().toString());
+        return source;
+    }
+
+    protected Map<String, Object>[] getCachedArray(final String key) {
+        return getCacheEntry(key).values;
+    }
+
+    /**
+     * A hash of the array content, which only changes when the array itself is written. The document version is not used since it
+     * restarts once the array document is deleted.
+     */
+    protected long getArrayVersion(final String key) {
+        return getCacheEntry(key).arrayVersion;
+    }
+
+    protected CacheEntry getCacheEntry(final String key) {
+        final long version = settings.getVersion();
+        final CacheEntry entry = cache.get(key);
+        if (entry != null && entry.version == version) {
+            return entry;
+        }
+        final CacheEntry loaded = loadFromArrayIndex(arraySettingsIndexName, settingsId, key, version);
+        cache.put(key, loaded);
+        return loaded;
+    }
+
+    protected void invalidate() {
+        cache.clear();
+        settings.updateArrayVersion();
     }
 
     protected String createArraySettingsIndexName(final String settingsIndexName) {
-        return settingsIndexName + "_array";
+        return settingsIndexName + ARRAY_INDEX_SUFFIX;
+    }
+
+    /**
+     * The index holding the arrays of every kind, shared by the bad word and elevate word settings.
+     */
+    protected String getArrayIndexName() {
+        return settings.getSettingsIndexName() + ARRAY_INDEX_SUFFIX;
     }
 
     protected String createId(final String key, final Object value) {
         return encoder.encodeToString(("key:" + key + "value:" + value).getBytes(CoreLibConstants.CHARSET_UTF_8));
     }
 
+    protected String createDocId(final String index, final String type, final String key) {
+        return encoder.encodeToString(("index:" + index + "id:" + type + "key:" + key).getBytes(CoreLibConstants.CHARSET_UTF_8));
+    }
+
     @SuppressWarnings("unchecked")
-    protected Map<String, Object>[] getFromArrayIndex(final String index, final String type, final String key) {
-        final String actualIndex = index + "." + type.toLowerCase(Locale.ENGLISH);
+    protected CacheEntry loadFromArrayIndex(final String index, final String type, final String key, final long version) {
         try {
-            SearchResponse response =
-                    client.prepareSearch().setIndices(actualIndex).setTypes(type).setScroll(TimeValue.timeValueSeconds(10))
-                            .setQuery(QueryBuilders.termQuery(FieldNames.ARRAY_KEY, key)).setSize(1000).execute()
+            final GetResponse response =
+                    client.prepareGet(getArrayIndexName(), ARRAY_TYPE, createDocId(index, type, key)).setRouting(type).execute()
                             .actionGet(SuggestConstants.ACTION_TIMEOUT);
-
-            final Map<String, Object>[] array = new Map[(int) response.getHits().getTotalHits()];
-
-            int count = 0;
-            while (response.getHits().getHits().length > 0) {
-                final String scrollId = response.getScrollId();
-                final SearchHit[] hits = response.getHits().getHits();
-                for (final SearchHit hit : hits) {
-                    array[count++] = hit.getSourceAsMap();
-                }
-                response = client.prepareSearchScroll(scrollId).setScroll(TimeValue.timeValueMinutes(10)).execute().actionGet();
+            if (!response.isExists()) {
+                return new CacheEntry(new Map[0], version, Collections.emptyList().hashCode());
             }
+            final List<Map<String, Object>> values = getValues(response);
+            return new CacheEntry(values.toArray(new Map[values.size()]), version, values.hashCode());
+        } catch (final IndexNotFoundException e) {
+            return new CacheEntry(new Map[0], version, Collections.emptyList().hashCode());
+        }
+    }
 
-            Arrays.sort(array, (o1, o2) -> {
-                if (o1 == null && o2 == null) {
-                    return 0;
-                } else if (o1 == null) {
-                    return -1;
-                } else if (o2 == null) {
-                    return 1;
-                }
+    protected void addToArrayIndex(final String index, final String type, final String id, final Map<String, Object> source) {
+        addAllToArrayIndex(index, type, source.get(FieldNames.ARRAY_KEY).toString(), Collections.singletonList(source));
+    }
 
-                final Object timeObj1 = o1.get(FieldNames.TIMESTAMP);
-                final Object timeObj2 = o2.get(FieldNames.TIMESTAMP);
-                if (timeObj1 == null && timeObj2 == null) {
-                    return 0;
-                } else if (timeObj1 == null) {
-                    return -1;
-                } else if (timeObj2 == null) {
-                    return 1;
+    protected void addAllToArrayIndex(final String index, final String type, final String key, final List<Map<String, Object>> sources) {
+        if (sources.isEmpty()) {
+            return;
+        }
+        try {
+            updateArrayDocument(index, type, key, values -> {
+                final Map<String, Integer> positions = new HashMap<>();
+                for (int i = 0; i < values.size(); i++) {
+                    positions.put(createId(key, values.get(i).get(FieldNames.ARRAY_VALUE)), i);
+                }
+                for (final Map<String, Object> source : sources) {
+                    final String id = createId(key, source.get(FieldNames.ARRAY_VALUE));
+                    final Integer pos = positions.get(id);
+                    if (pos != null) {
+                        values.set(pos, source);
+                    } else {
+                        positions.put(id, values.size());
+                        values.add(source);
+                    }
                 }
-
-                return o1.toString().compareTo(o2.toString());
             });
-            return array;
-        } catch (final IndexNotFoundException e) {
-            return new Map[0];
+        } catch (final Exception e) {
+            throw new SuggestSettingsException("Failed to add to array.", e);
+        } finally {
+            invalidate();
         }
     }
 
-    protected void addToArrayIndex(final String index, final String type, final String id, final Map<String, Object> source) {
-        final String actualIndex = index + "." + type.toLowerCase(Locale.ENGLISH);
+    protected void replaceArrayIndex(final String index, final String type, final String key, final List<Map<String, Object>> sources) {
         try {
-            client.prepareUpdate().setIndex(actualIndex).setType(type).setId(id).setDocAsUpsert(true)
-                    .setDoc(JsonXContent.contentBuilder().map(source)).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
-            client.admin().indices().prepareRefresh().setIndices(actualIndex).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+            updateArrayDocument(index, type, key, values -> {
+                values.clear();
+                final Set<String> ids = new HashSet<>();
+                for (final Map<String, Object> source : sources) {
+                    if (ids.add(createId(key, source.get(FieldNames.ARRAY_VALUE)))) {
+                        values.add(source);
+                    }
+                }
+            });
         } catch (final Exception e) {
-            throw new SuggestSettingsException("Failed to add to array.", e);
+            throw new SuggestSettingsException("Failed to replace array.", e);
+        } finally {
+            invalidate();
         }
     }
 
     protected void deleteKeyFromArray(final String index, final String type, final String key) {
-        final String actualIndex = index + "." + type.toLowerCase(Locale.ENGLISH);
         try {
-            SuggestUtil.deleteByQuery(client, actualIndex, type, QueryBuilders.termQuery(FieldNames.ARRAY_KEY, key));
+            client.prepareDelete(getArrayIndexName(), ARRAY_TYPE, createDocId(index, type, key)).setRouting(type).execute()
+                    .actionGet(SuggestConstants.ACTION_TIMEOUT);
         } catch (final Exception e) {
             throw new SuggestSettingsException("Failed to delete all from array.", e);
+        } finally {
+            invalidate();
         }
     }
 
-    protected void deleteFromArray(final String index, final String type, final String id) {
-        final String actualIndex = index + "." + type.toLowerCase(Locale.ENGLISH);
+    protected void deleteFromArray(final String index, final String type, final String key, final String id) {
+        deleteAllFromArray(index, type, key, Collections.singleton(id));
+    }
+
+    protected void deleteAllFromArray(final String index, final String type, final String key, final Set<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
         try {
-            client.prepareDelete().setIndex(actualIndex).setType(type).setId(id).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
-            client.admin().indices().prepareRefresh().setIndices(actualIndex).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+            updateArrayDocument(index, type, key,
+                    values -> values.removeIf(value -> ids.contains(createId(key, value.get(FieldNames.ARRAY_VALUE)))));
         } catch (final Exception e) {
             throw new SuggestSettingsException("Failed to delete from array.", e);
+        } finally {
+            invalidate();
         }
     }
 
-    protected void createMappingIfEmpty(final String index, final String type, final Client client) {
-        final String actualIndex = index + "." + type.toLowerCase(Locale.ENGLISH);
-        try {
-            boolean empty;
+    protected void updateArrayDocument(final String index, final String type, final String key,
+            final Consumer<List<Map<String, Object>>> updater) {
+        final String docId = createDocId(index, type, key);
+        for (int retry = 0;; retry++) {
+            final GetResponse getResponse =
+                    client.prepareGet(getArrayIndexName(), ARRAY_TYPE, docId).setRouting(type).execute()
+                            .actionGet(SuggestConstants.ACTION_TIMEOUT);
+            final List<Map<String, Object>> values = new ArrayList<>();
+            if (getResponse.isExists()) {
+                values.addAll(getValues(getResponse));
+            }
+            updater.accept(values);
+
+            final Map<String, Object> source = new HashMap<>();
+            source.put(SETTINGS_ID_FIELD, type);
+            source.put(KIND_FIELD, index);
+            source.put(FieldNames.ARRAY_KEY, key);
+            source.put(VALUES_FIELD, values);
+            source.put(FieldNames.TIMESTAMP, LocalDateTime.now().toString());
+
+            final IndexRequestBuilder builder =
+                    client.prepareIndex(getArrayIndexName(), ARRAY_TYPE, docId).setRouting(type).setSource(source);
+            if (getResponse.isExists()) {
+                builder.setVersion(getResponse.getVersion());
+            } else {
+                builder.setOpType(DocWriteRequest.OpType.CREATE);
+            }
             try {
-                empty =
-                        client.admin().indices().prepareGetMappings(actualIndex).setTypes(type).execute()
-                                .actionGet(SuggestConstants.ACTION_TIMEOUT).getMappings().isEmpty();
-            } catch (final IndexNotFoundException e) {
-                empty = true;
-                final CreateIndexResponse response =
-                        client.admin().indices().prepareCreate(actualIndex).setSettings(loadIndexSettings(), XContentType.JSON).execute()
-                                .actionGet(SuggestConstants.ACTION_TIMEOUT);
-                if (!response.isAcknowledged()) {
-                    throw new SuggestSettingsException("Failed to create " + actualIndex + "/" + type + " index.", e);
+                builder.execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+                return;
+            } catch (final Exception e) {
+                if (!(ExceptionsHelper.unwrapCause(e) instanceof VersionConflictEngineException) || retry >= MAX_UPDATE_RETRY) {
+                    throw e;
                 }
-                client.admin().cluster().prepareHealth(actualIndex).setWaitForYellowStatus().execute()
-                        .actionGet(SuggestConstants.ACTION_TIMEOUT);
             }
-            if (empty) {
-                client.admin()
-                        .indices()
-                        .preparePutMapping(actualIndex)
-                        .setType(type)
-                        .setSource(
-                                XContentFactory.jsonBuilder().startObject().startObject(settingsId).startObject("properties")
-                                        .startObject(FieldNames.ARRAY_KEY).field("type", "keyword").endObject().endObject().endObject()
-                                        .endObject()).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected List<Map<String, Object>> getValues(final GetResponse response) {
+        final Object values = response.getSource().get(VALUES_FIELD);
+        if (values instanceof List) {
+            return (List<Map<String, Object>>) values;
+        }
+        return new ArrayList<>();
+    }
+
+    protected void createIndexIfNothing() {
+        try {
+            if (existsIndex(getArrayIndexName())) {
+                return;
+            }
+            final CreateIndexResponse response =
+                    client.admin()
+                            .indices()
+                            .prepareCreate(getArrayIndexName())
+                            .setSettings(loadIndexSettings(), XContentType.JSON)
+                            .addMapping(
+                                    ARRAY_TYPE,
+                                    XContentFactory.jsonBuilder().startObject().startObject(ARRAY_TYPE).field("dynamic", false)
+                                            .startObject("properties").startObject(SETTINGS_ID_FIELD).field("type", "keyword").endObject()
+                                            .startObject(KIND_FIELD).field("type", "keyword").endObject()
+                                            .startObject(FieldNames.ARRAY_KEY).field("type", "keyword").endObject()
+                                            .startObject(VALUES_FIELD).field("type", "object").field("enabled", false).endObject()
+                                            .endObject().endObject().endObject()).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+            if (!response.isAcknowledged()) {
+                throw new SuggestSettingsException("Failed to create " + getArrayIndexName() + " index.");
             }
+            client.admin().cluster().prepareHealth(getArrayIndexName()).setWaitForYellowStatus().execute()
+                    .actionGet(SuggestConstants.ACTION_TIMEOUT);
+        } catch (final ResourceAlreadyExistsException e) {
+            // created by another instance
         } catch (final IOException e) {
-            throw new SuggestSettingsException("Failed to create mappings.");
+            throw new SuggestSettingsException("Failed to create mappings.", e);
+        }
+    }
+
+    protected void migrateLegacyIndex(final String index, final String type) {
+        final String legacyIndex = index + "." + type.toLowerCase(Locale.ENGLISH);
+        if (!existsIndex(legacyIndex)) {
+            return;
+        }
+        try {
+            migrateLegacyIndex(index, type, legacyIndex);
+        } catch (final Exception e) {
+            if (!(ExceptionsHelper.unwrapCause(e) instanceof IndexNotFoundException) && existsIndex(legacyIndex)) {
+                throw e;
+            }
+            // migrated and deleted by another instance. merging is idempotent, so the values are all in place.
+        }
+    }
+
+    protected boolean existsIndex(final String index) {
+        return client.admin().indices().prepareExists(index).execute().actionGet(SuggestConstants.ACTION_TIMEOUT).isExists();
+    }
+
+    protected void migrateLegacyIndex(final String index, final String type, final String legacyIndex) {
+
+        final Map<String, List<Map<String, Object>>> legacyValues = new LinkedHashMap<>();
+        SearchResponse response =
+                client.prepareSearch(legacyIndex).setQuery(QueryBuilders.matchAllQuery()).setScroll(TimeValue.timeValueMinutes(1))
+                        .setSize(1000).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+        String scrollId = response.getScrollId();
+        try {
+            while (response.getHits().getHits().length > 0) {
+                for (final SearchHit hit : response.getHits().getHits()) {
+                    final Map<String, Object> source = hit.getSourceAsMap();
+                    final Object key = source.get(FieldNames.ARRAY_KEY);
+                    if (key != null) {
+                        legacyValues.computeIfAbsent(key.toString(), k -> new ArrayList<>()).add(source);
+                    }
+                }
+                response =
+                        client.prepareSearchScroll(scrollId).setScroll(TimeValue.timeValueMinutes(1)).execute()
+                                .actionGet(SuggestConstants.ACTION_TIMEOUT);
+                scrollId = response.getScrollId();
+            }
+        } finally {
+            client.prepareClearScroll().addScrollId(scrollId).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+        }
+
+        final Comparator<Map<String, Object>> comparator =
+                Comparator.comparing(source -> String.valueOf(source.get(FieldNames.TIMESTAMP)));
+        legacyValues.forEach((key, sources) -> {
+            sources.sort(comparator);
+            updateArrayDocument(index, type, key, values -> {
+                for (final Map<String, Object> source : sources) {
+                    final String id = createId(key, source.get(FieldNames.ARRAY_VALUE));
+                    if (values.stream().noneMatch(value -> id.equals(createId(key, value.get(FieldNames.ARRAY_VALUE))))) {
+                        values.add(source);
+                    }
+                }
+            });
+        });
+
+        client.admin().indices().prepareDelete(legacyIndex).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+        if (!legacyValues.isEmpty()) {
+            invalidate();
         }
     }
 
@@ -207,4 +414,15 @@ public class ArraySettings {
         return sb.toString().replaceAll(Pattern.quote("${fess.dictionary.path}"), dictionaryPath);
     }
 
+    protected static class CacheEntry {
+        protected final Map<String, Object>[] values;
+        protected final long version;
+        protected final long arrayVersion;
+
+        protected CacheEntry(final Map<String, Object>[] values, final long version, final long arrayVersion) {
+            this.values = values;
+            this.version = version;
+            this.arrayVersion = arrayVersion;
+        }
+    }
 }
@@ -16,8 +16,9 @@ public class BadWordSettings {
 
     protected static String[] defaultWords = null;
 
-    protected BadWordSettings(final Client client, final String settingsIndexName, final String settingsId) {
-        this.arraySettings = new ArraySettings(client, settingsIndexName, settingsId) {
+    protected BadWordSettings(final SuggestSettings settings, final Client client, final String settingsIndexName,
+            final String settingsId) {
+        this.arraySettings = new ArraySettings(settings, client, settingsIndexName, settingsId) {
             @Override
             protected String createArraySettingsIndexName(final String settingsIndexName) {
                 return settingsIndexName + "_badword";
@@ -41,21 +42,39 @@ public class BadWordSettings {
     }
 
     public void add(final String badWord) {
-        final String validationError = getValidationError(badWord);
-        if (validationError != null) {
-            throw new IllegalArgumentException("Validation error. " + validationError);
-        }
+        validate(badWord);
         arraySettings.add(BAD_WORD_SETTINGD_KEY, badWord);
     }
 
+    public void addAll(final List<String> badWords) {
+        badWords.forEach(this::validate);
+        arraySettings.addAll(BAD_WORD_SETTINGD_KEY, badWords);
+    }
+
+    public void replaceAll(final List<String> badWords) {
+        badWords.forEach(this::validate);
+        arraySettings.replaceAll(BAD_WORD_SETTINGD_KEY, badWords);
+    }
+
     public void delete(final String badWord) {
         arraySettings.delete(BAD_WORD_SETTINGD_KEY, badWord);
     }
 
+    public void deleteAll(final List<String> badWords) {
+        arraySettings.deleteAll(BAD_WORD_SETTINGD_KEY, badWords);
+    }
+
     public void deleteAll() {
         arraySettings.delete(BAD_WORD_SETTINGD_KEY);
     }
 
+    protected void validate(final String badWord) {
+        final String validationError = getValidationError(badWord);
+        if (validationError != null) {
+            throw new IllegalArgumentException("Validation error. " + validationError);
+        }
+    }
+
     protected String getValidationError(final String badWord) {
         if (Strings.isNullOrEmpty(badWord)) {
             return "badWord was empty.";
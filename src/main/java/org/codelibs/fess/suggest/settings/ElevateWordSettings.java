@@ -4,6 +4,7 @@ import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.codelibs.fess.suggest.constants.FieldNames;
 import org.codelibs.fess.suggest.entity.ElevateWord;
@@ -19,8 +20,9 @@ public class ElevateWordSettings {
 
     protected ArraySettings arraySettings;
 
-    protected ElevateWordSettings(final Client client, final String settingsIndexName, final String settingsId) {
-        this.arraySettings = new ArraySettings(client, settingsIndexName, settingsId) {
+    protected ElevateWordSettings(final SuggestSettings settings, final Client client, final String settingsIndexName,
+            final String settingsId) {
+        this.arraySettings = new ArraySettings(settings, client, settingsIndexName, settingsId) {
             @Override
             protected String createArraySettingsIndexName(final String settingsIndexName) {
                 return settingsIndexName + "_elevate";
@@ -29,8 +31,7 @@ public class ElevateWordSettings {
     }
 
     public ElevateWord[] get() {
-        final Map<String, Object>[] sourceArray =
-                arraySettings.getFromArrayIndex(arraySettings.arraySettingsIndexName, arraySettings.settingsId, ELEVATE_WORD_SETTINGD_KEY);
+        final Map<String, Object>[] sourceArray = arraySettings.getCachedArray(ELEVATE_WORD_SETTINGD_KEY);
 
         final ElevateWord[] elevateWords = new ElevateWord[sourceArray.length];
         for (int i = 0; i < elevateWords.length; i++) {
@@ -52,7 +53,30 @@ public class ElevateWordSettings {
         return elevateWords;
     }
 
+    /**
+     * Identifies the stored elevate words. Unlike {@link SuggestSettings#getVersion()} it does not change on writes of other
+     * settings, but it is not ordered, so it can only be compared for equality.
+     */
+    public long getVersion() {
+        return arraySettings.getArrayVersion(ELEVATE_WORD_SETTINGD_KEY);
+    }
+
     public void add(final ElevateWord elevateWord) {
+        arraySettings.addToArrayIndex(arraySettings.arraySettingsIndexName, arraySettings.settingsId,
+                arraySettings.createId(ELEVATE_WORD_SETTINGD_KEY, elevateWord.getElevateWord()), createSource(elevateWord));
+    }
+
+    public void addAll(final List<ElevateWord> elevateWords) {
+        arraySettings.addAllToArrayIndex(arraySettings.arraySettingsIndexName, arraySettings.settingsId, ELEVATE_WORD_SETTINGD_KEY,
+                elevateWords.stream().map(this::createSource).collect(Collectors.toList()));
+    }
+
+    public void replaceAll(final List<ElevateWord> elevateWords) {
+        arraySettings.replaceArrayIndex(arraySettings.arraySettingsIndexName, arraySettings.settingsId, ELEVATE_WORD_SETTINGD_KEY,
+                elevateWords.stream().map(this::createSource).collect(Collectors.toList()));
+    }
+
+    protected Map<String, Object> createSource(final ElevateWord elevateWord) {
         final Map<String, Object> source = new HashMap<>();
         source.put(FieldNames.ARRAY_KEY, ELEVATE_WORD_SETTINGD_KEY);
         source.put(FieldNames.ARRAY_VALUE, elevateWord.getElevateWord());
@@ -61,10 +85,8 @@ public class ElevateWordSettings {
         source.put(ELEVATE_WORD_FIELDS, elevateWord.getFields());
         source.put(ELEVATE_WORD_TAGS, elevateWord.getTags());
         source.put(ELEVATE_WORD_ROLES, elevateWord.getRoles());
-        source.put(FieldNames.TIMESTAMP, LocalDateTime.now());
-
-        arraySettings.addToArrayIndex(arraySettings.arraySettingsIndexName, arraySettings.settingsId,
-                arraySettings.createId(ELEVATE_WORD_SETTINGD_KEY, elevateWord.getElevateWord()), source);
+        source.put(FieldNames.TIMESTAMP, LocalDateTime.now().toString());
+        return source;
     }
 
     public void delete(final String elevateWord) {
@@ -75,4 +97,8 @@ public class ElevateWordSettings {
         arraySettings.delete(ELEVATE_WORD_SETTINGD_KEY);
     }
 
+    public void deleteAll(final List<String> elevateWords) {
+        arraySettings.deleteAll(ELEVATE_WORD_SETTINGD_KEY, elevateWords);
+    }
+
 }
@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,6 +23,10 @@ import org.elasticsearch.common.xcontent.json.JsonXContent;
 import org.elasticsearch.index.IndexNotFoundException;
 
 public class SuggestSettings {
+    public static final long DEFAULT_RELOAD_INTERVAL = 10 * 1000L;
+
+    protected static final String ARRAY_VERSION_KEY = "arrayVersion";
+
     protected final String settingsId;
 
     protected final Client client;
@@ -37,8 +42,22 @@ public class SuggestSettings {
     protected final String badWordIndexName;
     protected final String elevateWordIndexName;
 
+    protected final long reloadInterval;
+
+    protected volatile Snapshot snapshot;
+
+    protected ArraySettings arraySettings;
+    protected AnalyzerSettings analyzerSettings;
+    protected BadWordSettings badWordSettings;
+    protected ElevateWordSettings elevateWordSettings;
+
     public SuggestSettings(final Client client, final String settingsId, final Map<String, Object> initialSettings,
             final String settingsIndexName, final String settingsTypeName) {
+        this(client, settingsId, initialSettings, settingsIndexName, settingsTypeName, DEFAULT_RELOAD_INTERVAL);
+    }
+
+    public SuggestSettings(final Client client, final String settingsId, final Map<String, Object> initialSettings,
+            final String settingsIndexName, final String settingsTypeName, final long reloadInterval) {
         this.client = client;
         this.settingsId = settingsId;
         this.settingsIndexName = settingsIndexName;
@@ -47,6 +66,7 @@ public class SuggestSettings {
 
         this.badWordIndexName = settingsIndexName + "-badword";
         this.elevateWordIndexName = settingsIndexName + "-elevateword";
+        this.reloadInterval = reloadInterval;
     }
 
     public void init() {
@@ -55,7 +75,7 @@ public class SuggestSettings {
         }
         initialized = true;
         initialize(initialSettings);
-        new AnalyzerSettings(client, settingsIndexName).init();
+        analyzer().init();
     }
 
     private void initialize(final Map<String, Object> initialSettings) {
@@ -108,14 +128,46 @@ public class SuggestSettings {
     }
 
     public Object get(final String key) {
+        return getSnapshot().source.get(key);
+    }
+
+    public long getVersion() {
+        return getSnapshot().version;
+    }
+
+    public void reload() {
+        snapshot = null;
+    }
+
+    protected Snapshot getSnapshot() {
+        final Snapshot current = snapshot;
+        final long now = System.currentTimeMillis();
+        if (current != null && now - current.checkedTime < reloadInterval) {
+            return current;
+        }
+
+        if (current != null) {
+            final GetResponse getResponse =
+                    client.prepareGet().setIndex(settingsIndexName).setType(settingsTypeName).setId(settingsId).setFetchSource(false)
+                            .execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+            if (getResponse.getVersion() == current.version) {
+                final Snapshot checked = new Snapshot(current.source, current.version, now);
+                snapshot = checked;
+                return checked;
+            }
+        }
+
         final GetResponse getResponse =
                 client.prepareGet().setIndex(settingsIndexName).setType(settingsTypeName).setId(settingsId).execute()
                         .actionGet(SuggestConstants.ACTION_TIMEOUT);
-        if (!getResponse.isExists()) {
-            return null;
+        final Snapshot loaded;
+        if (getResponse.isExists()) {
+            loaded = new Snapshot(Collections.unmodifiableMap(getResponse.getSource()), getResponse.getVersion(), now);
+        } else {
+            loaded = new Snapshot(Collections.emptyMap(), -1, now);
         }
-        final Map<String, Object> map = getResponse.getSource();
-        return map.get(key);
+        snapshot = loaded;
+        return loaded;
     }
 
     public String getAsString(final String key, final String defaultValue) {
@@ -190,6 +242,8 @@ public class SuggestSettings {
             client.admin().indices().prepareRefresh().setIndices(settingsIndexName).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
         } catch (final Exception e) {
             throw new SuggestSettingsException("Failed to update suggestSettings.", e);
+        } finally {
+            reload();
         }
     }
 
@@ -201,23 +255,49 @@ public class SuggestSettings {
             client.admin().indices().prepareRefresh().setIndices(settingsIndexName).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
         } catch (final Exception e) {
             throw new SuggestSettingsException("Failed to update suggestSettings.", e);
+        } finally {
+            reload();
+        }
+    }
+
+    protected void updateArrayVersion() {
+        try {
+            client.prepareUpdate().setIndex(settingsIndexName).setType(settingsTypeName).setId(settingsId).setDocAsUpsert(true)
+                    .setDoc(ARRAY_VERSION_KEY, System.currentTimeMillis()).setRetryOnConflict(5).execute()
+                    .actionGet(SuggestConstants.ACTION_TIMEOUT);
+        } catch (final Exception e) {
+            throw new SuggestSettingsException("Failed to update suggestSettings.", e);
+        } finally {
+            reload();
         }
     }
 
-    public ArraySettings array() {
-        return new ArraySettings(client, settingsIndexName, settingsId);
+    public synchronized ArraySettings array() {
+        if (arraySettings == null) {
+            arraySettings = new ArraySettings(this, client, settingsIndexName, settingsId);
+        }
+        return arraySettings;
     }
 
-    public AnalyzerSettings analyzer() {
-        return new AnalyzerSettings(client, settingsIndexName);
+    public synchronized AnalyzerSettings analyzer() {
+        if (analyzerSettings == null) {
+            analyzerSettings = new AnalyzerSettings(client, settingsIndexName);
+        }
+        return analyzerSettings;
     }
 
-    public BadWordSettings badword() {
-        return new BadWordSettings(client, settingsIndexName, settingsId);
+    public synchronized BadWordSettings badword() {
+        if (badWordSettings == null) {
+            badWordSettings = new BadWordSettings(this, client, settingsIndexName, settingsId);
+        }
+        return badWordSettings;
     }
 
-    public ElevateWordSettings elevateWord() {
-        return new ElevateWordSettings(client, settingsIndexName, settingsId);
+    public synchronized ElevateWordSettings elevateWord() {
+        if (elevateWordSettings == null) {
+            elevateWordSettings = new ElevateWordSettings(this, client, settingsIndexName, settingsId);
+        }
+        return elevateWordSettings;
     }
 
     public String getSettingsIndexName() {
@@ -272,6 +352,18 @@ public class SuggestSettings {
         return new SuggestSettingsBuilder();
     }
 
+    protected static class Snapshot {
+        protected final Map<String, Object> source;
+        protected final long version;
+        protected final long checkedTime;
+
+        protected Snapshot(final Map<String, Object> source, final long version, final long checkedTime) {
+            this.source = source;
+            this.version = version;
+            this.checkedTime = checkedTime;
+        }
+    }
+
     public static class DefaultKeys {
         public static final String INDEX = "index";
         public static final String TYPE = "type";
@@ -280,6 +372,10 @@ public class SuggestSettings {
         public static final String ROLE_FIELD_NAME = "roleFieldName";
         public static final String LANG_FIELD_NAME = "langFieldName";
         public static final String PARALLEL_PROCESSING = "parallel";
+        public static final String DELETE_REQUESTS_PER_SECOND = "deleteRequestsPerSecond";
+        public static final String READING_ROUTING = "readingRouting";
+        public static final String CANONICAL_READING = "canonicalReading";
+        public static final String COLLAPSE_DUPLICATES = "collapseDuplicates";
 
         private DefaultKeys() {
         }
@@ -13,6 +13,8 @@ public class SuggestSettingsBuilder {
 
     protected Map<String, Object> initialSettings = new HashMap<>();
 
+    protected long reloadInterval = SuggestSettings.DEFAULT_RELOAD_INTERVAL;
+
     public SuggestSettingsBuilder setSettingsIndexName(final String settingsIndexName) {
         this.settingsIndexName = settingsIndexName.toLowerCase(Locale.ENGLISH);
         return this;
@@ -28,7 +30,12 @@ public class SuggestSettingsBuilder {
         return this;
     }
 
+    public SuggestSettingsBuilder setReloadInterval(final long reloadInterval) {
+        this.reloadInterval = reloadInterval;
+        return this;
+    }
+
     public SuggestSettings build(final Client client, final String id) {
-        return new SuggestSettings(client, id, initialSettings, settingsIndexName, settingsTypeName);
+        return new SuggestSettings(client, id, initialSettings, settingsIndexName, settingsTypeName, reloadInterval);
     }
 }
@@ -0,0 +1,135 @@
+package org.codelibs.fess.suggest.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton that tells whether a text contains any of the given words.
+ */
+public class BadWordMatcher {
+    private final char[][] labels;
+
+    private final int[][] targets;
+
+    private final int[] failures;
+
+    private final boolean[] outputs;
+
+    private final boolean matchAll;
+
+    public BadWordMatcher(final String[] words) {
+        final List<Map<Character, Integer>> trie = new ArrayList<>();
+        final List<Boolean> terminals = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        terminals.add(Boolean.FALSE);
+
+        boolean empty = false;
+        for (final String word : words) {
+            if (word == null) {
+                continue;
+            }
+            if (word.isEmpty()) {
+                empty = true;
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < word.length(); i++) {
+                final char c = word.charAt(i);
+                Integer next = trie.get(state).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.get(state).put(c, next);
+                    trie.add(new TreeMap<>());
+                    terminals.add(Boolean.FALSE);
+                }
+                state = next;
+            }
+            terminals.set(state, Boolean.TRUE);
+        }
+        matchAll = empty;
+
+        final int size = trie.size();
+        labels = new char[size][];
+        targets = new int[size][];
+        failures = new int[size];
+        outputs = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            final Map<Character, Integer> children = trie.get(i);
+            labels[i] = new char[children.size()];
+            targets[i] = new int[children.size()];
+            int pos = 0;
+            for (final Map.Entry<Character, Integer> entry : children.entrySet()) {
+                labels[i][pos] = entry.getKey();
+                targets[i][pos] = entry.getValue();
+                pos++;
+            }
+            outputs[i] = terminals.get(i);
+        }
+
+        final Deque<Integer> queue = new ArrayDeque<>();
+        for (final int child : targets[0]) {
+            failures[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            final int state = queue.poll();
+            for (int i = 0; i < labels[state].length; i++) {
+                final int child = targets[state][i];
+                int fail = failures[state];
+                int next = transition(fail, labels[state][i]);
+                while (next < 0 && fail != 0) {
+                    fail = failures[fail];
+                    next = transition(fail, labels[state][i]);
+                }
+                failures[child] = next < 0 ? 0 : next;
+                outputs[child] |= outputs[failures[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    public boolean matches(final String text) {
+        if (matchAll) {
+            return true;
+        }
+        if (text == null) {
+            return false;
+        }
+
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            int next = transition(state, c);
+            while (next < 0 && state != 0) {
+                state = failures[state];
+                next = transition(state, c);
+            }
+            state = next < 0 ? 0 : next;
+            if (outputs[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int transition(final int state, final char c) {
+        final char[] label = labels[state];
+        int low = 0;
+        int high = label.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (label[mid] < c) {
+                low = mid + 1;
+            } else if (label[mid] > c) {
+                high = mid - 1;
+            } else {
+                return targets[state][mid];
+            }
+        }
+        return -1;
+    }
+}
@@ -1,13 +1,21 @@
 package org.codelibs.fess.suggest.util;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Stream;
+import java.util.Set;
 
 import org.apache.lucene.queryparser.flexible.standard.StandardQueryParser;
 import org.apache.lucene.queryparser.flexible.standard.config.StandardQueryConfigHandler;
@@ -16,9 +24,12 @@ import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
 import org.codelibs.core.CoreLibConstants;
+import org.codelibs.fess.suggest.constants.FieldNames;
+import org.codelibs.fess.suggest.constants.SuggestConstants;
 import org.codelibs.fess.suggest.converter.AnalyzerConverter;
 import org.codelibs.fess.suggest.converter.KatakanaToAlphabetConverter;
 import org.codelibs.fess.suggest.converter.ReadingConverter;
+import org.codelibs.fess.suggest.converter.ReadingCanonicalizer;
 import org.codelibs.fess.suggest.converter.ReadingConverterChain;
 import org.codelibs.fess.suggest.entity.SuggestItem;
 import org.codelibs.fess.suggest.exception.SuggesterException;
@@ -27,35 +38,222 @@ import org.codelibs.fess.suggest.normalizer.Normalizer;
 import org.codelibs.fess.suggest.normalizer.NormalizerChain;
 import org.codelibs.fess.suggest.settings.AnalyzerSettings;
 import org.codelibs.fess.suggest.settings.SuggestSettings;
-import org.elasticsearch.action.bulk.BulkRequestBuilder;
-import org.elasticsearch.action.bulk.BulkResponse;
-import org.elasticsearch.action.delete.DeleteRequest;
-import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.admin.cluster.state.ClusterStateResponse;
+import org.elasticsearch.action.admin.indices.mapping.get.GetMappingsResponse;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
 import org.elasticsearch.client.Client;
-import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.cluster.routing.OperationRouting;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.document.DocumentField;
+import org.elasticsearch.common.hash.MurmurHash3;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.json.JsonXContent;
 import org.elasticsearch.index.query.QueryBuilder;
-import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.index.reindex.AbstractBulkByScrollRequest;
+import org.elasticsearch.index.reindex.BulkByScrollResponse;
+import org.elasticsearch.index.reindex.DeleteByQueryAction;
+import org.elasticsearch.index.reindex.DeleteByQueryRequestBuilder;
+import org.elasticsearch.index.reindex.UpdateByQueryAction;
+import org.elasticsearch.index.reindex.UpdateByQueryRequestBuilder;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
 
 public final class SuggestUtil {
     private static final int MAX_QUERY_TERM_NUM = 5;
     private static final int MAX_QUERY_TERM_LENGTH = 48;
 
-    private static final Base64.Encoder encoder = Base64.getEncoder();
+    private static final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
 
-    private static final int idMaxLength = 445;
+    private static final long ID_HASH_SEED = 0;
+
+    private static final Base64.Encoder legacyEncoder = Base64.getEncoder();
+
+    private static final int LEGACY_ID_MAX_LENGTH = 445;
+
+    private static final String ID_VERSION_KEY = "idVersion";
+
+    private static final String INDEX_SORT_FIELD = "index.sort.field";
+
+    private static final String NO_READING_ROUTING = "_";
+
+    private static final String ROUTING_FIELD = "_routing";
+
+    private static final int MAX_VERSION_CONFLICT_RETRIES = 3;
+
+    private static final int MAX_SHARD_ROUTING_CANDIDATES = 100000;
 
     private SuggestUtil() {
     }
 
     public static String createSuggestTextId(final String text) {
-        final String id = encoder.encodeToString(text.getBytes(CoreLibConstants.CHARSET_UTF_8));
-        if (id.length() > 445) {
-            return id.substring(0, idMaxLength);
+        final byte[] bytes = text.getBytes(CoreLibConstants.CHARSET_UTF_8);
+        final MurmurHash3.Hash128 hash = MurmurHash3.hash128(bytes, 0, bytes.length, ID_HASH_SEED, new MurmurHash3.Hash128());
+        final byte[] idBytes = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            idBytes[i] = (byte) (hash.h1 >>> (56 - i * 8));
+            idBytes[i + 8] = (byte) (hash.h2 >>> (56 - i * 8));
+        }
+        return encoder.encodeToString(idBytes);
+    }
+
+    /**
+     * Returns the id an index created before murmur3 ids would use for the text.
+     */
+    public static String createLegacySuggestTextId(final String text) {
+        final String id = legacyEncoder.encodeToString(text.getBytes(CoreLibConstants.CHARSET_UTF_8));
+        if (id.length() > LEGACY_ID_MAX_LENGTH) {
+            return id.substring(0, LEGACY_ID_MAX_LENGTH);
         }
         return id;
     }
 
+    public static String createSuggestTextId(final String text, final boolean legacy) {
+        return legacy ? createLegacySuggestTextId(text) : createSuggestTextId(text);
+    }
+
+    /**
+     * Returns true if every index behind the alias is sorted on the stored score. Older indices hold a score computed
+     * differently and have to be migrated by createNextIndex(true) before they are searched in rank mode.
+     */
+    public static boolean isScoreSortedIndex(final Client client, final String index) {
+        final GetSettingsResponse response =
+                client.admin().indices().prepareGetSettings(index).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+        boolean sorted = false;
+        final Iterator<Settings> it = response.getIndexToSettings().valuesIt();
+        while (it.hasNext()) {
+            if (!it.next().getAsList(INDEX_SORT_FIELD).contains(FieldNames.SCORE)) {
+                return false;
+            }
+            sorted = true;
+        }
+        return sorted;
+    }
+
+    /**
+     * Returns true if the index, or an index behind the alias, has no idVersion in its mapping meta and therefore
+     * still holds legacy ids. Such an index is migrated by createNextIndex(true).
+     */
+    public static boolean isLegacyIdIndex(final Client client, final String index, final String type) {
+        final GetMappingsResponse response =
+                client.admin().indices().prepareGetMappings(index).setTypes(type).execute().actionGet(SuggestConstants.ACTION_TIMEOUT);
+        final Iterator<ImmutableOpenMap<String, MappingMetaData>> it = response.getMappings().valuesIt();
+        while (it.hasNext()) {
+            final MappingMetaData mapping = it.next().get(type);
+            if (mapping == null) {
+                continue;
+            }
+            final Object meta = mapping.sourceAsMap().get("_meta");
+            if (!(meta instanceof Map) || ((Map<?, ?>) meta).get(ID_VERSION_KEY) == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the smallest first character of the canonical first readings, so that kana and romaji variants of the same
+     * reading are routed to the same shard.
+     */
+    public static String createRouting(final SuggestItem item) {
+        if (item.getReadingNum() == 0) {
+            return NO_READING_ROUTING;
+        }
+        String routing = null;
+        for (final String reading : item.getReadingList(0)) {
+            if (reading == null || reading.isEmpty()) {
+                continue;
+            }
+            final String canonical = ReadingCanonicalizer.canonicalize(reading);
+            if (canonical.isEmpty()) {
+                continue;
+            }
+            final String value = String.valueOf(canonical.charAt(0));
+            if (routing == null || value.compareTo(routing) < 0) {
+                routing = value;
+            }
+        }
+        return routing == null ? NO_READING_ROUTING : routing;
+    }
+
+    public static Set<String> createRoutings(final List<String> readings) {
+        final Set<String> routings = new HashSet<>();
+        for (final String reading : readings) {
+            if (reading == null || reading.isEmpty()) {
+                return Collections.emptySet();
+            }
+            routings.add(String.valueOf(Character.toLowerCase(reading.charAt(0))));
+            for (final String canonical : ReadingCanonicalizer.canonicalizePrefix(reading)) {
+                if (canonical.isEmpty()) {
+                    return Collections.emptySet();
+                }
+                routings.add(String.valueOf(canonical.charAt(0)));
+            }
+        }
+        return routings;
+    }
+
+    /**
+     * Looks up the given ids on every shard with a realtime multi get, so that documents written since the last refresh are found
+     * whatever routing they were stored with. Returns the found response of each id, or else a failed or not found one.
+     */
+    public static Map<String, MultiGetItemResponse> getStoredDocuments(final Client client, final String index, final String type,
+            final String[] ids, final boolean fetchSource) {
+        final String[] shardRoutings = getShardRoutings(client, index);
+        final MultiGetRequestBuilder builder = client.prepareMultiGet().setRealtime(true);
+        for (final String id : ids) {
+            for (final String routing : shardRoutings) {
+                builder.add(new MultiGetRequest.Item(index, type, id).routing(routing).fetchSourceContext(
+                        fetchSource ? FetchSourceContext.FETCH_SOURCE : FetchSourceContext.DO_NOT_FETCH_SOURCE));
+            }
+        }
+        final Map<String, MultiGetItemResponse> documents = new HashMap<>();
+        for (final MultiGetItemResponse response : builder.execute().actionGet(SuggestConstants.ACTION_TIMEOUT).getResponses()) {
+            final MultiGetItemResponse current = documents.get(response.getId());
+            if (current == null || !isFound(current) && (response.isFailed() || isFound(response))) {
+                documents.put(response.getId(), response);
+            }
+        }
+        return documents;
+    }
+
+    /**
+     * Returns the routing value a found document was stored with, or null if it was indexed without routing.
+     */
+    public static String getStoredRouting(final GetResponse response) {
+        final DocumentField field = response.getField(ROUTING_FIELD);
+        return field == null ? null : field.getValue();
+    }
+
+    private static boolean isFound(final MultiGetItemResponse response) {
+        return !response.isFailed() && response.getResponse().isExists();
+    }
+
+    /**
+     * Returns one routing value per shard of the index.
+     */
+    protected static String[] getShardRoutings(final Client client, final String index) {
+        final ClusterStateResponse response =
+                client.admin().cluster().prepareState().clear().setMetaData(true).setIndices(index).execute()
+                        .actionGet(SuggestConstants.ACTION_TIMEOUT);
+        final Set<String> routings = new LinkedHashSet<>();
+        for (final IndexMetaData indexMetaData : response.getState().getMetaData()) {
+            final Set<Integer> shardIds = new HashSet<>();
+            for (int i = 0; shardIds.size() < indexMetaData.getNumberOfShards() && i < MAX_SHARD_ROUTING_CANDIDATES; i++) {
+                final String routing = Integer.toString(i);
+                if (shardIds.add(OperationRouting.generateShardId(indexMetaData, null, routing))) {
+                    routings.add(routing);
+                }
+            }
+        }
+        return routings.toArray(new String[routings.size()]);
+    }
+
     public static String[] parseQuery(final String q, final String field) {
         final List<String> keywords = getKeywords(q, new String[] { field });
         if (MAX_QUERY_TERM_NUM < keywords.size()) {
@@ -126,6 +324,10 @@ public final class SuggestUtil {
     }
 
     public static String createBulkLine(final String index, final String type, final SuggestItem item) {
+        return createBulkLine(index, type, item, false);
+    }
+
+    public static String createBulkLine(final String index, final String type, final SuggestItem item, final boolean canonicalReading) {
         final Map<String, Object> firstLineMap = new HashMap<>();
         final Map<String, Object> firstLineInnerMap = new HashMap<>();
         firstLineInnerMap.put("_index", index);
@@ -136,18 +338,22 @@ public final class SuggestUtil {
         final Map<String, Object> secondLine = new HashMap<>();
 
         secondLine.put("text", item.getText());
+        secondLine.put("dedupeKey", SuggestItem.createDedupeKey(item.getText()));
 
         //reading
         final String[][] readings = item.getReadings();
         for (int i = 0; i < readings.length; i++) {
             secondLine.put("reading_" + i, readings[i]);
+            if (canonicalReading) {
+                secondLine.put("canonical_reading_" + i, SuggestItem.createCanonicalReadings(Arrays.asList(readings[i])));
+            }
         }
 
         secondLine.put("fields", item.getFields());
         secondLine.put("queryFreq", item.getQueryFreq());
         secondLine.put("docFreq", item.getDocFreq());
         secondLine.put("userBoost", item.getUserBoost());
-        secondLine.put("score", (item.getQueryFreq() + item.getDocFreq()) * item.getUserBoost());
+        secondLine.put("score", SuggestItem.calculateScore(item.getDocFreq(), item.getQueryFreq(), item.getUserBoost()));
         secondLine.put("tags", item.getTags());
         secondLine.put("roles", item.getRoles());
         secondLine.put("kinds", item.getKinds().toString());
@@ -207,30 +413,111 @@ public final class SuggestUtil {
     }
 
     public static boolean deleteByQuery(final Client client, final String index, final String type, final QueryBuilder queryBuilder) {
+        return deleteByQuery(client, index, type, queryBuilder, Float.POSITIVE_INFINITY);
+    }
+
+    public static boolean deleteByQuery(final Client client, final String index, final String type, final QueryBuilder queryBuilder,
+            final float requestsPerSecond) {
         try {
-            SearchResponse searchResponse =
-                    client.prepareSearch(index).setTypes(type).setQuery(queryBuilder).setSize(500)
-                            .setScroll(TimeValue.timeValueSeconds(10)).execute().actionGet();
+            BulkByScrollResponse response =
+                    createDeleteByQueryRequest(client, index, type, queryBuilder, requestsPerSecond).execute().actionGet();
+            for (int i = 0; i < MAX_VERSION_CONFLICT_RETRIES && hasOnlyVersionConflicts(response); i++) {
+                // documents updated during the scan are still matched by the query on the next pass.
+                response = createDeleteByQueryRequest(client, index, type, queryBuilder, requestsPerSecond).execute().actionGet();
+            }
+            final List<Throwable> failures = getFailures(response);
+            if (!failures.isEmpty()) {
+                throw new SuggesterException(failures.get(0));
+            }
+        } catch (final Exception e) {
+            throw new SuggesterException("Failed to exec delete by query.", e);
+        }
 
-            while (searchResponse.getHits().getHits().length > 0) {
-                final String scrollId = searchResponse.getScrollId();
-                final SearchHit[] hits = searchResponse.getHits().getHits();
+        return true;
+    }
 
-                final BulkRequestBuilder bulkRequestBuiler = client.prepareBulk();
-                Stream.of(hits).map(SearchHit::getId).forEach(id -> bulkRequestBuiler.add(new DeleteRequest(index, type, id)));
+    public static DeleteByQueryRequestBuilder createDeleteByQueryRequest(final Client client, final String index, final String type,
+            final QueryBuilder queryBuilder, final float requestsPerSecond) {
+        final DeleteByQueryRequestBuilder builder = DeleteByQueryAction.INSTANCE.newRequestBuilder(client);
+        builder.source(index).filter(queryBuilder).abortOnVersionConflict(false).refresh(true)
+                .setSlices(AbstractBulkByScrollRequest.AUTO_SLICES).setRequestsPerSecond(requestsPerSecond);
+        builder.source().setTypes(type);
+        return builder;
+    }
 
-                final BulkResponse bulkResponse = bulkRequestBuiler.execute().actionGet();
-                if (bulkResponse.hasFailures()) {
-                    throw new SuggesterException(bulkResponse.buildFailureMessage());
-                }
-                searchResponse = client.prepareSearchScroll(scrollId).setScroll(TimeValue.timeValueSeconds(10)).execute().actionGet();
+    public static BulkByScrollResponse updateByQuery(final Client client, final String index, final String type,
+            final QueryBuilder queryBuilder, final Script script) {
+        try {
+            BulkByScrollResponse response = createUpdateByQueryRequest(client, index, type, queryBuilder, script).execute().actionGet();
+            for (int i = 0; i < MAX_VERSION_CONFLICT_RETRIES && hasOnlyVersionConflicts(response); i++) {
+                // the query and the script are expected to be idempotent, so a conflicting document is processed again.
+                response = createUpdateByQueryRequest(client, index, type, queryBuilder, script).execute().actionGet();
             }
-            client.admin().indices().prepareRefresh(index).execute().actionGet();
+            return response;
         } catch (final Exception e) {
-            throw new SuggesterException("Failed to exec delete by query.", e);
+            throw new SuggesterException("Failed to exec update by query.", e);
         }
+    }
 
-        return true;
+    private static UpdateByQueryRequestBuilder createUpdateByQueryRequest(final Client client, final String index, final String type,
+            final QueryBuilder queryBuilder, final Script script) {
+        final UpdateByQueryRequestBuilder builder = UpdateByQueryAction.INSTANCE.newRequestBuilder(client);
+        builder.source(index).filter(queryBuilder).script(script).abortOnVersionConflict(false).refresh(true)
+                .setSlices(AbstractBulkByScrollRequest.AUTO_SLICES);
+        builder.source().setTypes(type);
+        return builder;
+    }
+
+    private static boolean hasOnlyVersionConflicts(final BulkByScrollResponse response) {
+        return response.getVersionConflicts() > 0 && response.getBulkFailures().isEmpty() && response.getSearchFailures().isEmpty();
+    }
+
+    /**
+     * Returns the bulk and search failures of the response. Documents skipped because of version conflicts are reported
+     * as one failure, since the request does not abort on them.
+     */
+    public static List<Throwable> getFailures(final BulkByScrollResponse response) {
+        final List<Throwable> failures = new ArrayList<>();
+        response.getBulkFailures().forEach(failure -> failures.add(failure.getCause()));
+        response.getSearchFailures().forEach(failure -> failures.add(failure.getReason()));
+        if (response.getVersionConflicts() > 0) {
+            failures.add(new SuggesterException(response.getVersionConflicts() + " documents were skipped because of version conflicts."));
+        }
+        return failures;
+    }
+
+    public static String createIndexName(final String index) {
+        return index + '.' + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS"));
+    }
+
+    public static String getDefaultMappings() throws IOException {
+        return readResource("suggest_indices/suggest/mappings-default.json");
+    }
+
+    public static String getMappings(final boolean readingRouting) throws IOException {
+        final String mappings = getDefaultMappings();
+        if (!readingRouting) {
+            return mappings;
+        }
+        // a write without the reading routing would put a second copy of the document on another shard.
+        return "{\"_routing\":{\"required\":true}," + mappings.substring(mappings.indexOf('{') + 1);
+    }
+
+    public static String getDefaultIndexSettings() throws IOException {
+        return readResource("suggest_indices/suggest.json");
+    }
+
+    private static String readResource(final String path) throws IOException {
+        final StringBuilder source = new StringBuilder();
+        try (BufferedReader br =
+                new BufferedReader(new InputStreamReader(SuggestUtil.class.getClassLoader().getResourceAsStream(path),
+                        CoreLibConstants.CHARSET_UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                source.append(line);
+            }
+        }
+        return source.toString();
     }
 
     public static String escapeWildcardQuery(final String query) {
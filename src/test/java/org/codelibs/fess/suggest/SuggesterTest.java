@@ -1,21 +1,31 @@
 package org.codelibs.fess.suggest;
 
 import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner;
+import org.codelibs.fess.suggest.constants.FieldNames;
 import org.codelibs.fess.suggest.constants.SuggestConstants;
 import org.codelibs.fess.suggest.entity.ElevateWord;
 import org.codelibs.fess.suggest.entity.SuggestItem;
+import org.codelibs.fess.suggest.index.SuggestDeleteResponse;
+import org.codelibs.fess.suggest.index.SuggestDeleteTask;
 import org.codelibs.fess.suggest.index.SuggestIndexResponse;
 import org.codelibs.fess.suggest.index.contents.document.ESSourceReader;
 import org.codelibs.fess.suggest.index.contents.querylog.QueryLog;
 import org.codelibs.fess.suggest.index.contents.querylog.QueryLogReader;
 import org.codelibs.fess.suggest.request.popularwords.PopularWordsResponse;
+import org.codelibs.fess.suggest.request.suggest.NegativeResultCache;
 import org.codelibs.fess.suggest.request.suggest.SuggestResponse;
+import org.codelibs.fess.suggest.request.suggest.SuggestSessionCache;
 import org.codelibs.fess.suggest.settings.SuggestSettings;
+import org.codelibs.fess.suggest.util.SuggestUtil;
 import org.elasticsearch.action.admin.indices.get.GetIndexResponse;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.index.IndexAction;
 import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.query.QueryBuilders;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -24,6 +34,9 @@ import org.junit.Test;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner.newConfigs;
@@ -118,6 +131,298 @@ public class SuggesterTest {
         assertEquals(0, response2.getNum());
     }
 
+    @Test
+    public void test_rankMode() throws Exception {
+        List<SuggestItem> items = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            items.add(new SuggestItem(new String[] { "test" + i }, new String[][] { new String[] { "test" + i } },
+                    new String[] { "content" }, i + 1, 0, 1.0f, null, null, null, SuggestItem.Kind.DOCUMENT));
+        }
+        suggester.indexer().index(items.toArray(new SuggestItem[items.size()]));
+        suggester.refresh();
+
+        GetSettingsResponse settingsResponse = runner.admin().indices().prepareGetSettings(suggester.getIndex()).execute().actionGet();
+        settingsResponse.getIndexToSettings().valuesIt()
+                .forEachRemaining(settings -> assertEquals(FieldNames.SCORE, settings.get("index.sort.field")));
+
+        SuggestResponse expected = suggester.suggest().setQuery("test").setSize(10).execute().getResponse();
+        SuggestResponse actual = suggester.suggest().setQuery("test").setSize(10).setRankMode(true).execute().getResponse();
+        assertEquals(10, actual.getNum());
+        assertEquals(expected.getWords(), actual.getWords());
+    }
+
+    @Test
+    public void test_rankModeNeedsScoreSortedIndex() throws Exception {
+        assertTrue(suggester.isRankModeAvailable());
+
+        String alias = suggester.getIndex();
+        String current = runner.admin().indices().prepareGetAliases(alias).execute().actionGet().getAliases().keysIt().next();
+        String legacyIndex = alias + ".legacy";
+        runner.admin().indices().prepareCreate(legacyIndex).execute().actionGet();
+        runner.admin().indices().prepareAliases().removeAlias(current, alias).addAlias(legacyIndex, alias).execute().actionGet();
+        suggester.rankModeAvailable = null;
+        assertFalse(suggester.isRankModeAvailable());
+        try {
+            suggester.suggest().setQuery("test").setRankMode(true).execute();
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        suggester.suggest().setQuery("test").execute().getResponse();
+
+        suggester.createNextIndex(true);
+        suggester.switchIndex();
+        assertTrue(suggester.isRankModeAvailable());
+        suggester.suggest().setQuery("test").setRankMode(true).execute().getResponse();
+    }
+
+    @Test
+    public void test_readingRouting() throws Exception {
+        suggester.settings().set(SuggestSettings.DefaultKeys.READING_ROUTING, true);
+        SuggestItem[] items = getItemSet1();
+        suggester.indexer().index(items);
+        suggester.refresh();
+
+        SearchResponse searchResponse =
+                runner.client().prepareSearch(suggester.getIndex()).setRouting(SuggestUtil.createRouting(items[0]))
+                        .setQuery(QueryBuilders.idsQuery().addIds(items[0].getId())).execute().actionGet();
+        assertEquals(1, searchResponse.getHits().getTotalHits());
+
+        SuggestResponse response = suggester.suggest().setQuery("kensaku").setSuggestDetail(true).execute().getResponse();
+        assertEquals(1, response.getNum());
+        assertEquals("検索 エンジン", response.getWords().get(0));
+        assertEquals(1, suggester.suggest().setQuery("zenbun").execute().getResponse().getNum());
+
+        suggester.indexer().index(items[0]);
+        suggester.refresh();
+        assertEquals(2, suggester.getAllWordsNum());
+        assertEquals(2, suggester.suggest().setQuery("kensaku").setSuggestDetail(true).execute().getResponse().getItems().get(0)
+                .getDocFreq());
+
+        SuggestItem kanaItem =
+                new SuggestItem(new String[] { "検索", "エンジン" }, new String[][] { new String[] { "けんさく" }, new String[] { "えんじん" } },
+                        new String[] { "content" }, 1, 0, -1, new String[] { "tag1" }, new String[] { SuggestConstants.DEFAULT_ROLE },
+                        null, SuggestItem.Kind.DOCUMENT);
+        suggester.indexer().index(kanaItem);
+        suggester.refresh();
+        assertEquals(2, suggester.getAllWordsNum());
+        assertEquals(3, suggester.suggest().setQuery("kensaku").setSuggestDetail(true).execute().getResponse().getItems().get(0)
+                .getDocFreq());
+
+        suggester.indexer().delete(items[0].getId());
+        suggester.refresh();
+        assertEquals(0, suggester.suggest().setQuery("kensaku").execute().getResponse().getNum());
+    }
+
+    @Test
+    public void test_readingRoutingBeforeRefresh() throws Exception {
+        suggester.settings().set(SuggestSettings.DefaultKeys.READING_ROUTING, true);
+        SuggestItem item1 =
+                new SuggestItem(new String[] { "検索" }, new String[][] { new String[] { "kensaku" } }, new String[] { "content" }, 1, 0,
+                        -1, null, null, null, SuggestItem.Kind.DOCUMENT);
+        SuggestItem item2 =
+                new SuggestItem(new String[] { "検索" }, new String[][] { new String[] { "sagasu" } }, new String[] { "content" }, 1, 0,
+                        -1, null, null, null, SuggestItem.Kind.DOCUMENT);
+        suggester.indexer().index(item1);
+        // not refreshed yet, the stored document is still found with its first routing.
+        suggester.indexer().index(item2);
+        suggester.refresh();
+        assertEquals(1, suggester.getAllWordsNum());
+        assertEquals(2, suggester.suggest().setQuery("kensaku").setSuggestDetail(true).execute().getResponse().getItems().get(0)
+                .getDocFreq());
+
+        SuggestItem item3 =
+                new SuggestItem(new String[] { "全文" }, new String[][] { new String[] { "zenbun" } }, new String[] { "content" }, 1, 0,
+                        -1, null, null, null, SuggestItem.Kind.DOCUMENT);
+        suggester.indexer().index(item3);
+        assertFalse(suggester.indexer().delete(item3.getId()).hasError());
+        assertTrue(suggester.indexer().delete(item3.getId()).hasError());
+        suggester.refresh();
+        assertEquals(1, suggester.getAllWordsNum());
+    }
+
+    @Test
+    public void test_canonicalReading() throws Exception {
+        suggester.settings().set(SuggestSettings.DefaultKeys.CANONICAL_READING, true);
+        SuggestItem[] items = getItemSet1();
+        suggester.indexer().index(items);
+        suggester.refresh();
+
+        assertEquals(1, suggester.suggest().setQuery("kensaku").execute().getResponse().getNum());
+        assertEquals(1, suggester.suggest().setQuery("kens").execute().getResponse().getNum());
+        assertEquals(1, suggester.suggest().setQuery("kensaku enj").execute().getResponse().getNum());
+        assertEquals(1, suggester.suggest().setQuery("kensaku enzi").execute().getResponse().getNum());
+        assertEquals(1, suggester.suggest().setQuery("kensaku enjin ").execute().getResponse().getNum());
+        assertEquals(0, suggester.suggest().setQuery("kensaku zenbun").execute().getResponse().getNum());
+    }
+
+    @Test
+    public void test_legacyIds() throws Exception {
+        assertFalse(SuggestUtil.isLegacyIdIndex(runner.client(), suggester.getIndex(), suggester.getType()));
+        runner.admin().indices().preparePutMapping(suggester.getIndex()).setType(suggester.getType())
+                .setSource("{\"_meta\":{}}", XContentType.JSON).execute().actionGet();
+        assertTrue(SuggestUtil.isLegacyIdIndex(runner.client(), suggester.getIndex(), suggester.getType()));
+
+        SuggestItem[] items = getItemSet1();
+        suggester.indexer().index(items);
+        suggester.refresh();
+        assertTrue(runner.client().prepareGet(suggester.getIndex(), suggester.getType(),
+                SuggestUtil.createLegacySuggestTextId(items[0].getText())).execute().actionGet().isExists());
+
+        suggester.indexer().index(items);
+        suggester.refresh();
+        assertEquals(2, suggester.getAllWordsNum());
+
+        // checked once per update index.
+        assertTrue(suggester.isLegacyIdIndex());
+        suggester.createNextIndex(true);
+        assertFalse(suggester.isLegacyIdIndex());
+    }
+
+    @Test
+    public void test_collapseDuplicates() throws Exception {
+        suggester.settings().set(SuggestSettings.DefaultKeys.COLLAPSE_DUPLICATES, true);
+        String[] tags = new String[] { "tag1" };
+        String[] roles = new String[] { SuggestConstants.DEFAULT_ROLE };
+        SuggestItem[] items = new SuggestItem[3];
+        items[0] = new SuggestItem(new String[] { "検索", "エンジン" }, new String[][] { new String[] { "kensaku" }, new String[] { "enjin" } },
+                new String[] { "content" }, 10, 0, -1, tags, roles, null, SuggestItem.Kind.DOCUMENT);
+        items[1] = new SuggestItem(new String[] { "検索エンジン" }, new String[][] { new String[] { "kensakuenjin" } },
+                new String[] { "content" }, 5, 0, -1, tags, roles, null, SuggestItem.Kind.DOCUMENT);
+        items[2] = new SuggestItem(new String[] { "検索結果" }, new String[][] { new String[] { "kensakukekka" } },
+                new String[] { "content" }, 1, 0, -1, tags, roles, null, SuggestItem.Kind.DOCUMENT);
+        suggester.indexer().index(items);
+        suggester.refresh();
+
+        SuggestResponse response = suggester.suggest().setQuery("kensaku").setSize(2).execute().getResponse();
+        assertEquals(2, response.getNum());
+        assertEquals(2, response.getTotal());
+        assertEquals("検索 エンジン", response.getWords().get(0));
+        assertEquals("検索結果", response.getWords().get(1));
+    }
+
+    @Test
+    public void test_concurrentTermConversion() throws Exception {
+        SuggestItem[] items = getItemSet1();
+        suggester.indexer().index(items);
+        suggester.refresh();
+
+        SuggestResponse expected = suggester.suggest().setExecutor(null).setQuery("kensaku enj").execute().getResponse();
+        SuggestResponse response = suggester.suggest().setQuery("kensaku enj").execute().getResponse();
+        assertEquals(1, response.getNum());
+        assertEquals(expected.getWords(), response.getWords());
+        assertTrue(response.getConversionTookMs() >= 0);
+        assertEquals(0, suggester.suggest().setQuery("kensaku zenbun").execute().getResponse().getNum());
+
+        // terms are converted on the caller while the pool is busy.
+        ExecutorService busyPool = Executors.newSingleThreadExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            busyPool.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            long start = System.currentTimeMillis();
+            assertEquals(1, suggester.suggest().setExecutor(busyPool).setQuery("kensaku enj").execute().getResponse().getNum());
+            assertTrue(System.currentTimeMillis() - start < SuggestConstants.ACTION_TIMEOUT);
+        } finally {
+            release.countDown();
+            busyPool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_negativeResultCache() throws Exception {
+        Suggester cacheSuggester = Suggester.builder().negativeResultCache(100, 60000L).build(runner.client(), "SuggesterTest");
+        cacheSuggester.indexer().index(getItemSet1());
+        cacheSuggester.refresh();
+
+        NegativeResultCache cache = cacheSuggester.getNegativeResultCache();
+        assertEquals(0, cacheSuggester.suggest().setQuery("kensakx").execute().getResponse().getNum());
+        assertEquals(1, cache.size());
+        assertEquals(0, cacheSuggester.suggest().setQuery("kensakxy").execute().getResponse().getNum());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cacheSuggester.suggest().setQuery("kensaku").execute().getResponse().getNum());
+
+        cacheSuggester.refresh();
+        assertEquals(0, cache.size());
+
+        assertEquals(0, cacheSuggester.suggest().setQuery("kensakx").execute().getResponse().getNum());
+        assertEquals(1, cache.size());
+        cacheSuggester.indexer().index(
+                new SuggestItem(new String[] { "検索x" }, new String[][] { new String[] { "kensakx" } }, new String[] { "content" }, 1, 0,
+                        -1, null, null, null, SuggestItem.Kind.DOCUMENT));
+        assertEquals(0, cache.size());
+        cacheSuggester.suggest().setQuery("kensakx").execute().getResponse();
+        assertEquals(0, cache.size());
+        runner.refresh();
+        assertEquals(1, cacheSuggester.suggest().setQuery("kensakx").execute().getResponse().getNum());
+    }
+
+    @Test
+    public void test_sessionRefinement() throws Exception {
+        Suggester sessionSuggester = Suggester.builder().sessionCache(100, 60000L).build(runner.client(), "SuggesterTest");
+        sessionSuggester.indexer().index(getItemSet1());
+        sessionSuggester.refresh();
+
+        SuggestResponse first = sessionSuggester.suggest().setQuery("ken").setSuggestDetail(true).execute().getResponse();
+        assertEquals(1, first.getNum());
+        assertNotNull(first.getSessionToken());
+
+        SuggestResponse expected = sessionSuggester.suggest().setQuery("kensa").setSuggestDetail(true).execute().getResponse();
+        SuggestResponse refined =
+                sessionSuggester.suggest().setQuery("kensa").setSuggestDetail(true).setSessionToken(first.getSessionToken()).execute()
+                        .getResponse();
+        assertEquals(expected.getWords(), refined.getWords());
+        assertEquals(expected.getItems().get(0).getDocFreq(), refined.getItems().get(0).getDocFreq());
+        assertEquals(0, sessionSuggester.suggest().setQuery("kensax").setSessionToken(refined.getSessionToken()).execute()
+                .getResponse().getNum());
+        assertEquals(1, sessionSuggester.suggest().setQuery("zenbun").setSessionToken(refined.getSessionToken()).execute()
+                .getResponse().getNum());
+
+        SuggestSessionCache cache = sessionSuggester.getSessionCache();
+        assertEquals(2, cache.getRefinedCount());
+        assertEquals(5, cache.getRequestCount());
+    }
+
+    @Test
+    public void test_shortPrefixTable() throws Exception {
+        Suggester tableSuggester = Suggester.builder().shortPrefixTable(2, 100).build(runner.client(), "SuggesterTest");
+        SuggestItem[] items = getItemSet1();
+        tableSuggester.indexer().index(items);
+        tableSuggester.refresh();
+        tableSuggester.buildShortPrefixTable();
+
+        SuggestResponse expected = suggester.suggest().setQuery("ke").setSuggestDetail(true).setRankMode(true).execute().getResponse();
+        SuggestResponse response = tableSuggester.suggest().setRankMode(true).setQuery("ke").setSuggestDetail(true).execute().getResponse();
+        assertEquals(1, response.getNum());
+        assertEquals(expected.getWords(), response.getWords());
+        assertEquals(2, tableSuggester.suggest().setRankMode(true).execute().getResponse().getNum());
+        assertEquals(0, tableSuggester.suggest().setRankMode(true).setQuery("ke").addTag("tag3").execute().getResponse().getNum());
+        SuggestResponse filtered = tableSuggester.suggest().setRankMode(true).setQuery("ke").addRole("role1").execute().getResponse();
+        assertEquals(1, filtered.getNum());
+        assertEquals(1, filtered.getTotal());
+        assertEquals(suggester.suggest().setQuery("ke").execute().getResponse().getWords(),
+                tableSuggester.suggest().setQuery("ke").execute().getResponse().getWords());
+
+        SuggestItem item =
+                new SuggestItem(new String[] { "計算" }, new String[][] { new String[] { "keisan" } }, new String[] { "content" }, 1, 0,
+                        -1, null, null, null, SuggestItem.Kind.DOCUMENT);
+        tableSuggester.indexer().index(item);
+        tableSuggester.refresh();
+        assertEquals(2, tableSuggester.suggest().setRankMode(true).setQuery("ke").execute().getResponse().getNum());
+        assertEquals(1, tableSuggester.suggest().setRankMode(true).setQuery("kei").execute().getResponse().getNum());
+
+        tableSuggester.buildShortPrefixTable();
+        assertEquals(2, tableSuggester.suggest().setRankMode(true).setQuery("ke").execute().getResponse().getNum());
+
+        tableSuggester.indexer().addBadWord("計算", true);
+        assertEquals(1, tableSuggester.suggest().setRankMode(true).setQuery("ke").execute().getResponse().getNum());
+    }
+
     @Test
     public void test_indexFromQueryString() throws Exception {
         SuggestSettings settings = suggester.settings();
@@ -373,6 +678,66 @@ public class SuggesterTest {
         assertEquals(0, elevateWords.length);
     }
 
+    @Test
+    public void test_elevateWordOverlay() throws Exception {
+        Suggester overlaySuggester = Suggester.builder().elevateWordOverlay(true).build(runner.client(), "SuggesterTest");
+        SuggestItem[] items = getItemSet1();
+        overlaySuggester.indexer().index(items);
+        overlaySuggester.refresh();
+
+        ElevateWord elevateWord1 =
+                new ElevateWord("test", 2.0f, Collections.singletonList("test"), Collections.singletonList("content"), null, null);
+        ElevateWord elevateWord2 =
+                new ElevateWord("検索 エンジン", 100.0f, Arrays.asList("kensaku", "enjin"), Collections.singletonList("content"), null,
+                        null);
+        overlaySuggester.indexer().addElevateWords(new ElevateWord[] { elevateWord1, elevateWord2 }, false);
+
+        SuggestResponse response1 = overlaySuggester.suggest().setQuery("tes").setSuggestDetail(true).execute().getResponse();
+        assertEquals(1, response1.getNum());
+        assertEquals("test", response1.getWords().get(0));
+        assertEquals(2.0f, response1.getItems().get(0).getUserBoost(), 0);
+
+        SuggestResponse response2 = overlaySuggester.suggest().setQuery("kensaku").setSuggestDetail(true).execute().getResponse();
+        assertEquals(1, response2.getNum());
+        assertEquals("検索 エンジン", response2.getWords().get(0));
+        assertEquals(100.0f, response2.getItems().get(0).getUserBoost(), 0);
+        assertEquals(0, suggester.suggest().setQuery("tes").execute().getResponse().getNum());
+
+        overlaySuggester.indexer().deleteElevateWord("test", false);
+        assertEquals(0, overlaySuggester.suggest().setQuery("tes").execute().getResponse().getNum());
+    }
+
+    @Test
+    public void test_elevateWordOverlayWithIndexedElevateWord() throws Exception {
+        Suggester overlaySuggester = Suggester.builder().elevateWordOverlay(true).build(runner.client(), "SuggesterTest");
+        ElevateWord elevateWord =
+                new ElevateWord("test", 2.0f, Collections.singletonList("test"), Collections.singletonList("content"), null, null);
+        overlaySuggester.indexer().addElevateWords(new ElevateWord[] { elevateWord }, true);
+        overlaySuggester.refresh();
+
+        SuggestResponse response = overlaySuggester.suggest().setQuery("tes").execute().getResponse();
+        assertEquals(1, response.getNum());
+        assertEquals(1, response.getTotal());
+        assertEquals(1, suggester.suggest().setQuery("tes").execute().getResponse().getNum());
+
+        List<List<String>> readings = Collections.singletonList(Collections.singletonList("tes"));
+        List<SuggestItem> items = overlaySuggester.elevateWordOverlay.lookup(readings, true);
+        assertEquals(1, items.size());
+        assertTrue(overlaySuggester.elevateWordOverlay.lookup(Collections.emptyList(), true).isEmpty());
+
+        // other settings writes do not rebuild the overlay.
+        overlaySuggester.settings().badword().add("unrelated");
+        assertSame(items.get(0), overlaySuggester.elevateWordOverlay.lookup(readings, true).get(0));
+
+        // a recreated array document is picked up as well.
+        overlaySuggester.settings().elevateWord().deleteAll();
+        overlaySuggester.settings().elevateWord().add(
+                new ElevateWord("tesla", 2.0f, Collections.singletonList("tesla"), Collections.singletonList("content"), null, null));
+        items = overlaySuggester.elevateWordOverlay.lookup(readings, true);
+        assertEquals(1, items.size());
+        assertEquals("tesla", items.get(0).getText());
+    }
+
     @Test
     public void test_restoreElevateWord() throws Exception {
         ElevateWord elevateWord1 =
@@ -397,6 +762,24 @@ public class SuggesterTest {
         assertEquals(1, response3.getNum());
     }
 
+    @Test
+    public void test_restoreElevateWordSkipsStoredSettings() throws Exception {
+        List<ElevateWord> elevateWords = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            elevateWords.add(new ElevateWord("word" + i, 2.0f, Collections.singletonList("word" + i), Collections
+                    .singletonList("content"), null, null));
+        }
+        suggester.settings().elevateWord().addAll(elevateWords);
+        long version = suggester.settings().getVersion();
+
+        SuggestIndexResponse response = suggester.indexer().restoreElevateWord();
+        suggester.refresh();
+        assertFalse(response.hasError());
+        assertEquals(version, suggester.settings().getVersion());
+        assertEquals(100, suggester.getAllWordsNum());
+        assertEquals(1, suggester.suggest().setQuery("word99").execute().getResponse().getNum());
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void test_deleteOldWords() throws Exception {
@@ -466,6 +849,38 @@ public class SuggesterTest {
         assertEquals(0, suggester.settings().badword().get(false).length);
     }
 
+    @Test
+    public void test_addBadWords() throws Exception {
+        SuggestItem[] items = getItemSet1();
+        suggester.indexer().index(items);
+        suggester.refresh();
+
+        suggester.indexer().addBadWords(new String[] { "ｴﾝｼﾞﾝ", "全文", "ｴﾝｼﾞﾝ" }, true);
+        suggester.refresh();
+        SuggestResponse response = suggester.suggest().setQuery("kensaku").setSuggestDetail(true).execute().getResponse();
+        assertEquals(0, response.getNum());
+        response = suggester.suggest().setQuery("zenbun").setSuggestDetail(true).execute().getResponse();
+        assertEquals(0, response.getNum());
+        assertEquals(2, suggester.settings().badword().get(false).length);
+    }
+
+    @Test
+    public void test_addElevateWords() throws Exception {
+        ElevateWord elevateWord1 =
+                new ElevateWord("test", 2.0f, Collections.singletonList("test"), Collections.singletonList("content"), null, null);
+        ElevateWord elevateWord2 =
+                new ElevateWord("hoge", 2.0f, Collections.singletonList("hoge"), Collections.singletonList("content"), null, null);
+
+        suggester.indexer().addElevateWords(new ElevateWord[] { elevateWord1, elevateWord2 }, true);
+        suggester.refresh();
+
+        assertEquals(2, suggester.settings().elevateWord().get().length);
+        SuggestResponse response1 = suggester.suggest().setQuery("tes").setSuggestDetail(true).execute().getResponse();
+        assertEquals(1, response1.getNum());
+        SuggestResponse response2 = suggester.suggest().setQuery("hoge").setSuggestDetail(true).execute().getResponse();
+        assertEquals(1, response2.getNum());
+    }
+
     @Test
     public void test_popularWords() throws Exception {
         SuggestItem[] items = getPopularWordsItemSet2();
@@ -491,6 +906,33 @@ public class SuggesterTest {
         }
     }
 
+    @Test
+    public void test_popularWordsPool() throws Exception {
+        Suggester poolSuggester = Suggester.builder().popularWordsPool(100, 60000L).build(runner.client(), "SuggesterTest");
+        poolSuggester.indexer().index(getPopularWordsItemSet2());
+        poolSuggester.refresh();
+
+        PopularWordsResponse response = poolSuggester.popularWords().setSize(2).setSeed("1").execute().getResponse();
+        assertEquals(5, response.getTotal());
+        assertEquals(2, response.getNum());
+        assertEquals(response.getWords(), poolSuggester.popularWords().setSize(2).setSeed("1").execute().getResponse().getWords());
+
+        final String excludeWord = "クエリー1";
+        for (int i = 0; i < 5; i++) {
+            boolean find = false;
+            final String checkStr = "クエリー" + i;
+            for (int j = 0; j < 1000; j++) {
+                response = poolSuggester.popularWords().setSize(2).addExcludeWord(excludeWord).execute().getResponse();
+                assertEquals(4, response.getTotal());
+                if (response.getWords().contains(checkStr)) {
+                    find = true;
+                    break;
+                }
+            }
+            assertEquals(!checkStr.equals(excludeWord), find);
+        }
+    }
+
     @Test
     public void test_popularWordsExcludeNotQueryWord() throws Exception {
         SuggestItem[] items = getPopularWordsItemSet2();
@@ -590,6 +1032,50 @@ public class SuggesterTest {
         assertEquals(0, suggester.getQueryWordsNum());
     }
 
+    @Test
+    public void test_deleteAllRecreatesIndex() throws Exception {
+        SuggestItem[] items = getItemSet1();
+        suggester.indexer().index(items);
+        suggester.indexer().addElevateWord(
+                new ElevateWord("test", 2.0f, Collections.singletonList("test"), Collections.singletonList("content"), null, null), true);
+        suggester.refresh();
+        assertEquals(3, suggester.getAllWordsNum());
+
+        suggester.indexer().deleteAll();
+        suggester.refresh();
+        assertEquals(1, suggester.getAllWordsNum());
+
+        GetIndexResponse getIndexResponse = runner.client().admin().indices().prepareGetIndex().execute().actionGet();
+        int count = 0;
+        for (String index : getIndexResponse.getIndices()) {
+            if (index.startsWith(suggester.getIndex())) {
+                count++;
+                assertEquals(2, getIndexResponse.getAliases().get(index).size());
+            }
+        }
+        assertEquals(1, count);
+    }
+
+    @Test
+    public void test_deleteByQueryAsync() throws Exception {
+        SuggestItem[] items = getItemSet1();
+        suggester.indexer().index(items);
+        suggester.refresh();
+        assertEquals(2, suggester.getAllWordsNum());
+
+        AtomicInteger writes = new AtomicInteger();
+        SuggestDeleteTask task =
+                suggester.indexer().setWriteListener(writes::incrementAndGet)
+                        .deleteByQueryAsync(QueryBuilders.rangeQuery(FieldNames.QUERY_FREQ).gte(1));
+        SuggestDeleteResponse response = task.promise().getResponse(1, TimeUnit.MINUTES);
+        assertFalse(response.hasError());
+        assertEquals(1, writes.get());
+        assertNull(task.getStatus());
+        assertFalse(task.cancel());
+        assertEquals(1, suggester.getAllWordsNum());
+        assertEquals(0, suggester.getQueryWordsNum());
+    }
+
     @Test
     public void test_deleteDocumentWords() throws Exception {
         SuggestItem[] items = getItemSet1();
@@ -686,6 +1172,52 @@ public class SuggesterTest {
         assertEquals(1, count);
     }
 
+    @Test
+    public void test_createNextIndexWithMigration() throws Exception {
+        final String legacyId = "legacy-id";
+        final SuggestItem item = getItemSet1()[0];
+        runner.client().prepareIndex(suggester.getIndex() + ".update", suggester.getType(), legacyId).setSource(item.getSource())
+                .execute().actionGet();
+        suggester.refresh();
+
+        Thread.sleep(1000);
+        suggester.createNextIndex(true);
+        suggester.switchIndex();
+        suggester.refresh();
+
+        SuggestResponse response = suggester.suggest().setQuery("kensaku").setSuggestDetail(true).execute().getResponse();
+        assertEquals(1, response.getNum());
+        assertEquals("検索 エンジン", response.getWords().get(0));
+        assertEquals(22, item.getId().length());
+        assertTrue(runner.client().prepareGet(suggester.getIndex(), suggester.getType(), item.getId()).execute().actionGet().isExists());
+        assertFalse(runner.client().prepareGet(suggester.getIndex(), suggester.getType(), legacyId).execute().actionGet().isExists());
+    }
+
+    @Test
+    public void test_migrateIndexMergesNewWords() throws Exception {
+        final String updateAlias = suggester.getIndex() + ".update";
+        suggester.indexer().index(getItemSet1()[0]);
+        runner.client().prepareIndex(updateAlias, suggester.getType(), "malformed").setSource(FieldNames.TEXT, "broken").execute()
+                .actionGet();
+        suggester.refresh();
+        final String prevIndex =
+                runner.client().admin().indices().prepareGetAliases(updateAlias).execute().actionGet().getAliases().keysIt().next();
+
+        suggester.createNextIndex();
+        final String nextIndex =
+                runner.client().admin().indices().prepareGetAliases(updateAlias).execute().actionGet().getAliases().keysIt().next();
+        final SuggestItem item = getItemSet1()[0];
+        suggester.indexer().index(item);
+        suggester.migrateIndex(prevIndex, nextIndex);
+        suggester.switchIndex();
+        suggester.refresh();
+
+        final Map<String, Object> source =
+                runner.client().prepareGet(suggester.getIndex(), suggester.getType(), item.getId()).execute().actionGet().getSourceAsMap();
+        assertEquals(2, Long.parseLong(source.get(FieldNames.DOC_FREQ).toString()));
+        assertFalse(runner.client().prepareGet(suggester.getIndex(), suggester.getType(), "malformed").execute().actionGet().isExists());
+    }
+
     private SuggestItem[] getItemSet1() {
         SuggestItem[] queryItems = new SuggestItem[3];
 
@@ -1,13 +1,40 @@
 package org.codelibs.fess.suggest.converter;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import junit.framework.TestCase;
 
 public class KatakanaConverterTest extends TestCase {
     public void test_convert() throws Exception {
-        /* TODO
         ReadingConverter converter = new KatakanaConverter();
         converter.init();
         assertEquals("ケンサク", converter.convert("検索").get(0));
-        */
+        assertEquals("ケンサクエンジン", converter.convert("検索エンジン").get(0));
+        assertEquals("ケンサク", converter.convert("けんさく").get(0));
+    }
+
+    public void test_convertConcurrently() throws Exception {
+        final ReadingConverter converter = new KatakanaConverter();
+        converter.init();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Future<?>[] futures = new Future<?>[4];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit(() -> {
+                    for (int j = 0; j < 100; j++) {
+                        assertEquals("ゼンブンケンサク", converter.convert("全文検索").get(0));
+                    }
+                    return null;
+                });
+            }
+            for (final Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdown();
+        }
     }
 }
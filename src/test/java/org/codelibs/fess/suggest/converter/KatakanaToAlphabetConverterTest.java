@@ -1,5 +1,12 @@
 package org.codelibs.fess.suggest.converter;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import junit.framework.TestCase;
 
 public class KatakanaToAlphabetConverterTest extends TestCase {
@@ -7,4 +14,33 @@ public class KatakanaToAlphabetConverterTest extends TestCase {
         KatakanaToAlphabetConverter katakanaToAlphabetConverter = new KatakanaToAlphabetConverter();
         assertTrue(katakanaToAlphabetConverter.convert("ケンサク", null).contains("kennsaku"));
     }
+
+    public void test_convertVariants() {
+        KatakanaToAlphabetConverter katakanaToAlphabetConverter = new KatakanaToAlphabetConverter();
+        assertEquals(Arrays.asList("situ", "shitu", "sitsu", "shitsu"), katakanaToAlphabetConverter.convert("シツ"));
+        assertEquals(Arrays.asList("sya", "sha"), katakanaToAlphabetConverter.convert("シャ"));
+        assertEquals(Arrays.asList("abc漢"), katakanaToAlphabetConverter.convert("ＡBｃ漢"));
+        assertEquals(16, katakanaToAlphabetConverter.convert("シシシシシ").size());
+    }
+
+    public void test_convertConcurrently() throws Exception {
+        final KatakanaToAlphabetConverter katakanaToAlphabetConverter = new KatakanaToAlphabetConverter();
+        final List<String> expected = katakanaToAlphabetConverter.convert("チカテツ");
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Future<?>[] futures = new Future<?>[4];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        assertEquals(expected, katakanaToAlphabetConverter.convert("チカテツ"));
+                    }
+                });
+            }
+            for (final Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
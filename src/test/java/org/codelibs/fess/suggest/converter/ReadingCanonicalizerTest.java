@@ -0,0 +1,81 @@
+package org.codelibs.fess.suggest.converter;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class ReadingCanonicalizerTest extends TestCase {
+    public void test_canonicalize() {
+        assertEquals("sin'bun'", ReadingCanonicalizer.canonicalize("shinbun"));
+        assertEquals("sin'bun'", ReadingCanonicalizer.canonicalize("shinnbunn"));
+        assertEquals("sin'bun'", ReadingCanonicalizer.canonicalize("しんぶん"));
+        assertEquals("sin'bun'", ReadingCanonicalizer.canonicalize("シンブン"));
+        assertEquals("tikatetu", ReadingCanonicalizer.canonicalize("chikatetsu"));
+        assertEquals("tikatetu", ReadingCanonicalizer.canonicalize("チカテツ"));
+        assertEquals("zidousya", ReadingCanonicalizer.canonicalize("jidousha"));
+        assertEquals("zidousya", ReadingCanonicalizer.canonicalize("じどうしゃ"));
+        assertEquals("huzisan'", ReadingCanonicalizer.canonicalize("Fujisan"));
+        assertEquals("huzisan'", ReadingCanonicalizer.canonicalize("ふじさん"));
+        assertEquals("kitte", ReadingCanonicalizer.canonicalize("kitte"));
+        assertEquals("kitte", ReadingCanonicalizer.canonicalize("キッテ"));
+        assertEquals("mattya", ReadingCanonicalizer.canonicalize("matcha"));
+        assertEquals("mattya", ReadingCanonicalizer.canonicalize("まっちゃ"));
+        assertEquals("kon'na", ReadingCanonicalizer.canonicalize("konna"));
+        assertEquals("kon'na", ReadingCanonicalizer.canonicalize("konnna"));
+        assertEquals("kon'na", ReadingCanonicalizer.canonicalize("こんな"));
+        assertEquals("kin'en'", ReadingCanonicalizer.canonicalize("kin'en"));
+        assertEquals("kin'en'", ReadingCanonicalizer.canonicalize("きんえん"));
+        assertEquals("abc", ReadingCanonicalizer.canonicalize("ＡＢＣ"));
+    }
+
+    public void test_canonicalizePrefix() {
+        assertEquals(Arrays.asList("s"), ReadingCanonicalizer.canonicalizePrefix("sh"));
+        assertEquals(Arrays.asList("t"), ReadingCanonicalizer.canonicalizePrefix("ch"));
+        assertEquals(Arrays.asList("t"), ReadingCanonicalizer.canonicalizePrefix("ts"));
+        assertEquals(Arrays.asList("huz"), ReadingCanonicalizer.canonicalizePrefix("fuj"));
+        assertEquals(Arrays.asList("kon"), ReadingCanonicalizer.canonicalizePrefix("kon"));
+        assertEquals(Arrays.asList("kon'"), ReadingCanonicalizer.canonicalizePrefix("konn"));
+        assertEquals(Arrays.asList("kin's"), ReadingCanonicalizer.canonicalizePrefix("kinsh"));
+        assertEquals(Arrays.asList("h", "f"), ReadingCanonicalizer.canonicalizePrefix("f"));
+        assertEquals(Arrays.asList("ti"), ReadingCanonicalizer.canonicalizePrefix("chi"));
+        assertEquals(1, ReadingCanonicalizer.canonicalize(Arrays.asList("kensaku", "けんさく", "ケンサク"), false).size());
+    }
+
+    public void test_distinctReadings() {
+        assertDistinct("こんな", "こな");
+        assertDistinct("きんえん", "きねん");
+        assertDistinct("キッテ", "キテ");
+        assertDistinct("kitte", "kite");
+        assertDistinct("konna", "kona");
+    }
+
+    private void assertDistinct(final String reading1, final String reading2) {
+        assertFalse(reading1 + " and " + reading2,
+                ReadingCanonicalizer.canonicalize(reading1).equals(ReadingCanonicalizer.canonicalize(reading2)));
+    }
+
+    public void test_canonicalizePrefixRecall() {
+        assertPrefixRecall("まっちゃ", "matcha");
+        assertPrefixRecall("いっしょ", "issho");
+        assertPrefixRecall("みっつ", "mittsu");
+        assertPrefixRecall("きって", "kitte");
+        assertPrefixRecall("ふじさん", "fujisan");
+        assertPrefixRecall("こんな", "konna");
+        assertPrefixRecall("こんな", "konnna");
+        assertPrefixRecall("きんえん", "kin'en");
+        assertPrefixRecall("しんぶん", "shinbun");
+        assertPrefixRecall("こな", "kona");
+    }
+
+    private void assertPrefixRecall(final String kana, final String romaji) {
+        final String canonical = ReadingCanonicalizer.canonicalize(kana);
+        for (int i = 1; i <= romaji.length(); i++) {
+            final String prefix = romaji.substring(0, i);
+            boolean matched = false;
+            for (final String key : ReadingCanonicalizer.canonicalizePrefix(prefix)) {
+                matched |= canonical.startsWith(key);
+            }
+            assertTrue(prefix + " does not match " + canonical, matched);
+        }
+    }
+}
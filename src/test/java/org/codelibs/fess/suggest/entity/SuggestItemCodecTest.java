@@ -0,0 +1,150 @@
+package org.codelibs.fess.suggest.entity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.codelibs.fess.suggest.exception.SuggesterException;
+import org.junit.Test;
+
+public class SuggestItemCodecTest {
+    @Test
+    public void test_roundTrip() throws Exception {
+        final SuggestItem item =
+                new SuggestItem(new String[] { "検索", "エンジン" }, new String[][] { { "kensaku", "けんさく" }, { "enjin" } },
+                        new String[] { "content" }, 10, 3, 1.5f, new String[] { "tag1" }, new String[] { "role1", "role2" },
+                        new String[] { "ja" }, SuggestItem.Kind.DOCUMENT);
+        item.setKinds(new SuggestItem.Kind[] { SuggestItem.Kind.DOCUMENT, SuggestItem.Kind.QUERY });
+
+        final List<SuggestItem> items = SuggestItemCodec.decode(SuggestItemCodec.encode(item));
+        assertEquals(1, items.size());
+        assertItem(item, items.get(0));
+    }
+
+    @Test
+    public void test_nullAndEmptyValues() throws Exception {
+        final SuggestItem item =
+                new SuggestItem(new String[] { "test" }, new String[][] { null, {} }, new String[0], 0, 0, -1.0f, null, null, null,
+                        SuggestItem.Kind.USER);
+
+        final SuggestItem decoded = SuggestItemCodec.decode(SuggestItemCodec.encode(item)).get(0);
+        assertItem(item, decoded);
+        assertNull(decoded.getReadings()[0]);
+        assertEquals(0, decoded.getReadings()[1].length);
+    }
+
+    @Test
+    public void test_batchWithDirectBuffer() throws Exception {
+        final List<SuggestItem> items =
+                Arrays.asList(
+                        new SuggestItem(new String[] { "aaa" }, new String[][] { { "aaa" } }, new String[] { "content" }, 1, 0, 1.0f,
+                                new String[] { "tag" }, null, new String[] { "en" }, SuggestItem.Kind.DOCUMENT),
+                        new SuggestItem(new String[] { "bbb" }, new String[][] { { "bbb" } }, new String[] { "content" }, 0, 5, 1.0f,
+                                new String[] { "tag" }, null, new String[] { "en" }, SuggestItem.Kind.QUERY));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SuggestItemCodec.encode(items, out);
+        SuggestItemCodec.encode(Collections.singletonList(items.get(0)), out);
+        final byte[] bytes = out.toByteArray();
+
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        buffer.flip();
+
+        final List<SuggestItem> first = SuggestItemCodec.decode(buffer);
+        assertEquals(2, first.size());
+        assertItem(items.get(0), first.get(0));
+        assertItem(items.get(1), first.get(1));
+
+        final List<SuggestItem> second = SuggestItemCodec.decode(buffer);
+        assertEquals(1, second.size());
+        assertItem(items.get(0), second.get(0));
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    public void test_corruptedBlock() throws Exception {
+        final SuggestItem item =
+                new SuggestItem(new String[] { "test" }, new String[][] { { "test" } }, new String[0], 1, 0, 1.0f, null, null, null,
+                        SuggestItem.Kind.DOCUMENT);
+        final byte[] bytes = SuggestItemCodec.encode(item);
+
+        try {
+            SuggestItemCodec.decode(Arrays.copyOf(bytes, bytes.length - 2));
+            fail();
+        } catch (final SuggesterException e) {
+            // expected
+        }
+
+        bytes[0] = 99;
+        try {
+            SuggestItemCodec.decode(bytes);
+            fail();
+        } catch (final SuggesterException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void test_invalidCounts() throws Exception {
+        final byte version = SuggestItemCodec.encode(Collections.emptyList())[0];
+        final byte[][] blocks = { //
+                // dictionary size of Integer.MAX_VALUE
+                { version, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 },
+                // negative dictionary size
+                { version, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                        (byte) 0xFF, 0x01 },
+                // more items than the remaining bytes can hold
+                { version, 0x00, 0x7F, 0x00 } };
+        for (final byte[] block : blocks) {
+            try {
+                SuggestItemCodec.decode(block);
+                fail();
+            } catch (final SuggesterException e) {
+                // expected
+            }
+        }
+
+        final SuggestItem item =
+                new SuggestItem(new String[] { "test" }, new String[][] { { "test" } }, new String[0], 1, 0, 1.0f,
+                        new String[] { "tag" }, null, null, SuggestItem.Kind.DOCUMENT);
+        final byte[] bytes = SuggestItemCodec.encode(item);
+        for (int i = 1; i < bytes.length; i++) {
+            final byte[] corrupted = bytes.clone();
+            corrupted[i] = (byte) 0xFF;
+            try {
+                SuggestItemCodec.decode(corrupted);
+            } catch (final SuggesterException e) {
+                // expected
+            }
+            try {
+                SuggestItemCodec.decode(Arrays.copyOf(bytes, i));
+                fail();
+            } catch (final SuggesterException e) {
+                // expected
+            }
+        }
+    }
+
+    private void assertItem(final SuggestItem expected, final SuggestItem actual) {
+        assertEquals(expected.getText(), actual.getText());
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getTimestampMillis(), actual.getTimestampMillis());
+        assertEquals(expected.getQueryFreq(), actual.getQueryFreq());
+        assertEquals(expected.getDocFreq(), actual.getDocFreq());
+        assertEquals(expected.getUserBoost(), actual.getUserBoost(), 0);
+        assertArrayEquals(expected.getReadings(), actual.getReadings());
+        assertArrayEquals(expected.getFields(), actual.getFields());
+        assertArrayEquals(expected.getTags(), actual.getTags());
+        assertArrayEquals(expected.getRoles(), actual.getRoles());
+        assertArrayEquals(expected.getLanguages(), actual.getLanguages());
+        assertArrayEquals(expected.getKinds(), actual.getKinds());
+    }
+}
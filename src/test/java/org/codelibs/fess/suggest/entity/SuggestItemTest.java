@@ -0,0 +1,120 @@
+package org.codelibs.fess.suggest.entity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.codelibs.fess.suggest.constants.FieldNames;
+import org.codelibs.fess.suggest.constants.SuggestConstants;
+import org.junit.Test;
+
+public class SuggestItemTest {
+    @Test
+    public void test_defensiveCopies() throws Exception {
+        final String[] tags = new String[] { "tag1" };
+        final String[][] readings = new String[][] { { "kensaku" } };
+        final SuggestItem item =
+                new SuggestItem(new String[] { "検索" }, readings, new String[] { "content" }, 1, 0, 1.0f, tags, null, null,
+                        SuggestItem.Kind.DOCUMENT);
+        final SuggestItem other =
+                new SuggestItem(new String[] { "エンジン" }, new String[][] { { "enjin" } }, null, 1, 0, 1.0f, null, null, null,
+                        SuggestItem.Kind.DOCUMENT);
+
+        item.getRoles()[0] = "changed";
+        item.getTags()[0] = "changed";
+        item.getReadings()[0][0] = "changed";
+        assertArrayEquals(new String[] { SuggestConstants.DEFAULT_ROLE }, item.getRoles());
+        assertArrayEquals(new String[] { SuggestConstants.DEFAULT_ROLE }, other.getRoles());
+        assertArrayEquals(new String[] { "tag1" }, item.getTags());
+        assertArrayEquals(new String[] { "kensaku" }, item.getReadings()[0]);
+
+        ((String[]) item.getSource().get(FieldNames.ROLES))[0] = "changed";
+        assertArrayEquals(new String[] { SuggestConstants.DEFAULT_ROLE }, other.getRoles());
+    }
+
+    @Test
+    public void test_accessorsWithoutCopies() throws Exception {
+        final String[] tags = new String[] { "tag1" };
+        final String[] roles = new String[] { "role1" };
+        final String[] fields = new String[] { "content" };
+        final SuggestItem item1 =
+                new SuggestItem(new String[] { "検索" }, new String[][] { { "kensaku" } }, fields, 1, 0, 1.0f, tags, roles, null,
+                        SuggestItem.Kind.DOCUMENT);
+        final SuggestItem item2 =
+                new SuggestItem(new String[] { "エンジン" }, new String[][] { { "enjin" } }, fields, 1, 0, 1.0f, tags, roles, null,
+                        SuggestItem.Kind.USER);
+
+        // items of one document share the arrays.
+        assertSame(item1.tags(), item2.tags());
+        assertSame(item1.roles(), item2.roles());
+        assertSame(item1.fields(), item2.fields());
+
+        assertTrue(item1.hasAnyTag(Arrays.asList("tag0", "tag1")));
+        assertFalse(item1.hasAnyRole(Collections.singletonList("role0")));
+        assertTrue(item1.hasAnyField(Collections.singletonList("content")));
+        assertTrue(item1.hasAnyKind(Collections.singletonList("document")));
+        assertFalse(item1.hasOnlyKind(SuggestItem.Kind.USER));
+        assertTrue(item2.hasOnlyKind(SuggestItem.Kind.USER));
+        assertEquals(1, item1.getReadingNum());
+        assertEquals(Collections.singletonList("kensaku"), item1.getReadingList(0));
+    }
+
+    @Test
+    public void test_mergeDoesNotShareArrays() throws Exception {
+        final SuggestItem item1 =
+                new SuggestItem(new String[] { "検索" }, new String[][] { { "kensaku" } }, new String[] { "content" }, 1, 0, 1.0f,
+                        new String[] { "tag1" }, null, null, SuggestItem.Kind.DOCUMENT);
+        final SuggestItem item2 =
+                new SuggestItem(new String[] { "検索" }, new String[][] { { "kensaku" } }, new String[] { "content" }, 1, 0, 1.0f,
+                        new String[] { "tag1" }, null, null, SuggestItem.Kind.QUERY);
+
+        final SuggestItem merged = SuggestItem.merge(item1, item2);
+        merged.setTags(new String[] { "tag2" });
+        assertArrayEquals(new String[] { "tag1" }, item1.getTags());
+        assertArrayEquals(new String[] { "tag1" }, item2.getTags());
+        assertEquals(2, merged.getDocFreq());
+    }
+
+    @Test
+    public void test_nullTimestamp() throws Exception {
+        final SuggestItem item =
+                new SuggestItem(new String[] { "test" }, new String[][] { { "test" } }, null, 1, 0, 1.0f, null, null, null,
+                        SuggestItem.Kind.DOCUMENT);
+        item.setTimestamp(null);
+        assertNull(item.getTimestamp());
+        assertNull(item.getSource().get(FieldNames.TIMESTAMP));
+
+        final Map<String, Object> existingSource = new HashMap<>();
+        assertNull(item.getUpdatedSource(existingSource).get(FieldNames.TIMESTAMP));
+    }
+
+    @Test
+    public void test_canonicalReadingSource() throws Exception {
+        final SuggestItem item =
+                new SuggestItem(new String[] { "test" }, new String[][] { { "test" } }, null, 1, 0, 1.0f, null, null, null,
+                        SuggestItem.Kind.DOCUMENT);
+        final String canonicalField = FieldNames.CANONICAL_READING_PREFIX + 0;
+        assertFalse(item.getSource().containsKey(canonicalField));
+        assertTrue(item.getSource(true).containsKey(canonicalField));
+        assertFalse(item.getUpdatedSource(new HashMap<>()).containsKey(canonicalField));
+        assertTrue(item.getUpdatedSource(new HashMap<>(), true).containsKey(canonicalField));
+    }
+
+    @Test
+    public void test_toStringDoesNotCreateId() throws Exception {
+        final SuggestItem item =
+                new SuggestItem(new String[] { "test" }, new String[][] { { "test" } }, null, 1, 0, 1.0f, null, null, null,
+                        SuggestItem.Kind.DOCUMENT);
+        assertTrue(item.toString().endsWith("id=null]"));
+        item.getId();
+        assertTrue(item.toString().endsWith("id=" + item.getId() + "]"));
+    }
+}
@@ -0,0 +1,27 @@
+package org.codelibs.fess.suggest.normalizer;
+
+import junit.framework.TestCase;
+
+public class LocalNormalizerTest extends TestCase {
+    public void test_normalize() {
+        LocalNormalizer normalizer = new LocalNormalizer();
+        assertEquals("ガギパ", normalizer.normalize("ｶﾞｷﾞﾋﾟ", null));
+        assertEquals("abcd", normalizer.normalize("ＡｂCd", null));
+        assertEquals("１２３", normalizer.normalize("１２３", null));
+        assertEquals("àσ", normalizer.normalize("ÀΣ", null));
+        assertEquals("", normalizer.normalize("", null));
+    }
+
+    public void test_sameAsChain() {
+        NormalizerChain chain = new NormalizerChain();
+        chain.add(new HankakuKanaToZenkakuKana());
+        chain.add(new FullWidthToHalfWidthAlphabetNormalizer());
+        chain.add(new ICUNormalizer("Any-Lower"));
+        LocalNormalizer normalizer = new LocalNormalizer();
+
+        String[] texts = { "ｹﾝｻｸ ｴﾝｼﾞﾝ", "ﾊﾟﾝ", "ﾎﾟﾝﾁﾞ", "ｶﾞﾞ", "Ｆｅｓｓ ＳＵＧＧＥＳＴ", "検索エンジン", "ÄÖÜ ｱｲｳ", "ﾞｶ", "ｶ" };
+        for (String text : texts) {
+            assertEquals(text, chain.normalize(text, null), normalizer.normalize(text, null));
+        }
+    }
+}
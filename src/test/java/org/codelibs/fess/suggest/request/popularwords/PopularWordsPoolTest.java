@@ -0,0 +1,70 @@
+package org.codelibs.fess.suggest.request.popularwords;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class PopularWordsPoolTest {
+    @Test
+    public void test_singleLoad() throws Exception {
+        final PopularWordsPool pool = new PopularWordsPool(10, 60000);
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<PopularWordsPool.Entry>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> pool.get("key", () -> {
+                    loads.incrementAndGet();
+                    loading.countDown();
+                    try {
+                        release.await();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new PopularWordsPool.Entry("index", Collections.emptyList(), 0);
+                })));
+            }
+            loading.await(10, TimeUnit.SECONDS);
+
+            // another key is not blocked by the running load.
+            final PopularWordsPool.Entry other =
+                    pool.get("other", () -> new PopularWordsPool.Entry("index", Collections.emptyList(), 0));
+            assertEquals("index", other.index);
+
+            release.countDown();
+            final PopularWordsPool.Entry entry = futures.get(0).get(10, TimeUnit.SECONDS);
+            for (final Future<PopularWordsPool.Entry> future : futures) {
+                assertSame(entry, future.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+            assertSame(entry, pool.get("key", () -> null));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_failedLoad() throws Exception {
+        final PopularWordsPool pool = new PopularWordsPool(10, 60000);
+        assertNull(pool.get("key", () -> {
+            throw new IllegalStateException("failed");
+        }));
+
+        final PopularWordsPool.Entry entry = new PopularWordsPool.Entry("index", Collections.emptyList(), 0);
+        assertSame(entry, pool.get("key", () -> entry));
+    }
+}
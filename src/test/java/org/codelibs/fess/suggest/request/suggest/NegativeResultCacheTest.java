@@ -0,0 +1,87 @@
+package org.codelibs.fess.suggest.request.suggest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class NegativeResultCacheTest {
+    @Test
+    public void test_prefixContainment() throws Exception {
+        NegativeResultCache cache = new NegativeResultCache(10, 60000L);
+        cache.put("f1", readings(Arrays.asList("abc", "xyz")), true);
+
+        assertTrue(cache.contains("f1", readings(Arrays.asList("abcd")), true));
+        assertTrue(cache.contains("f1", readings(Arrays.asList("abcd", "xyzw")), true));
+        assertTrue(cache.contains("f1", readings(Arrays.asList("abc")), false));
+        assertTrue(cache.contains("f1", readings(Arrays.asList("abcd"), Arrays.asList("e")), true));
+        assertFalse(cache.contains("f1", readings(Arrays.asList("ab")), true));
+        assertFalse(cache.contains("f1", readings(Arrays.asList("abcd", "abd")), true));
+        assertFalse(cache.contains("f2", readings(Arrays.asList("abcd")), true));
+        assertEquals(4, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void test_termContainment() throws Exception {
+        NegativeResultCache cache = new NegativeResultCache(10, 60000L);
+        cache.put("f1", readings(Arrays.asList("abc", "def"), Arrays.asList("x")), false);
+
+        assertTrue(cache.contains("f1", readings(Arrays.asList("abc"), Arrays.asList("x")), false));
+        assertTrue(cache.contains("f1", readings(Arrays.asList("abc"), Arrays.asList("x"), Arrays.asList("y")), true));
+        assertFalse(cache.contains("f1", readings(Arrays.asList("abc"), Arrays.asList("x")), true));
+        assertFalse(cache.contains("f1", readings(Arrays.asList("abc"), Arrays.asList("xy")), false));
+        assertFalse(cache.contains("f1", readings(Arrays.asList("abc")), false));
+    }
+
+    @Test
+    public void test_expireAndEvict() throws Exception {
+        NegativeResultCache cache = new NegativeResultCache(2, 60000L);
+        cache.put("f1", readings(Arrays.asList("a")), true);
+        cache.put("f1", readings(Arrays.asList("b")), true);
+        cache.put("f1", readings(Arrays.asList("c")), true);
+        assertEquals(2, cache.size());
+        assertFalse(cache.contains("f1", readings(Arrays.asList("a")), true));
+        assertTrue(cache.contains("f1", readings(Arrays.asList("c")), true));
+        cache.clear();
+        assertFalse(cache.contains("f1", readings(Arrays.asList("c")), true));
+
+        NegativeResultCache expiring = new NegativeResultCache(2, -1L);
+        expiring.put("f1", readings(Arrays.asList("a")), true);
+        assertFalse(expiring.contains("f1", readings(Arrays.asList("a")), true));
+        assertEquals(0, expiring.size());
+    }
+
+    @Test
+    public void test_hitRefreshesOrder() throws Exception {
+        NegativeResultCache cache = new NegativeResultCache(2, 60000L);
+        cache.put("f1", readings(Arrays.asList("a")), true);
+        cache.put("f1", readings(Arrays.asList("b")), true);
+        assertTrue(cache.contains("f1", readings(Arrays.asList("ab")), true));
+        cache.put("f1", readings(Arrays.asList("c")), true);
+        assertTrue(cache.contains("f1", readings(Arrays.asList("a")), true));
+        assertFalse(cache.contains("f1", readings(Arrays.asList("b")), true));
+    }
+
+    @Test
+    public void test_invalidate() throws Exception {
+        NegativeResultCache cache = new NegativeResultCache(10, 60000L, 60000L);
+        cache.put("f1", readings(Arrays.asList("a")), true);
+        cache.invalidate();
+        assertEquals(0, cache.size());
+        cache.put("f1", readings(Arrays.asList("a")), true);
+        assertEquals(0, cache.size());
+        cache.refreshed();
+        cache.put("f1", readings(Arrays.asList("a")), true);
+        assertEquals(1, cache.size());
+    }
+
+    @SafeVarargs
+    private static List<List<String>> readings(final List<String>... terms) {
+        return Arrays.asList(terms);
+    }
+}
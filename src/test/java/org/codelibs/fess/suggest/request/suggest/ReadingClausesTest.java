@@ -0,0 +1,24 @@
+package org.codelibs.fess.suggest.request.suggest;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ReadingClausesTest {
+    @Test
+    public void test_matches() throws Exception {
+        ReadingClauses clauses = new ReadingClauses(Arrays.asList(Arrays.asList("kensaku", "kennsaku"), Arrays.asList("en")), true);
+        assertTrue(clauses.matches(new String[][] { { "kennsaku" }, { "enjin", "ennjinn" } }));
+        assertTrue(clauses.matches(new String[][] { { "kensaku" }, { "en" }, { "x" } }));
+        assertFalse(clauses.matches(new String[][] { { "kensakux" }, { "enjin" } }));
+        assertFalse(clauses.matches(new String[][] { { "kensaku" }, { "zenbun" } }));
+        assertFalse(clauses.matches(new String[][] { { "kensaku" } }));
+
+        ReadingClauses exact = new ReadingClauses(Arrays.asList(Arrays.asList("en")), false);
+        assertTrue(exact.matches(new String[][] { { "en" } }));
+        assertFalse(exact.matches(new String[][] { { "enjin" } }));
+    }
+}
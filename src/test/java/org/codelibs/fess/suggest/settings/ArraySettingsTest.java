@@ -1,8 +1,17 @@
 package org.codelibs.fess.suggest.settings;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner;
 import org.codelibs.fess.suggest.Suggester;
+import org.codelibs.fess.suggest.constants.FieldNames;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.IndexNotFoundException;
+import org.elasticsearch.index.query.QueryBuilders;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -84,4 +93,65 @@ public class ArraySettingsTest {
         settings.array().delete(key);
         assertEquals(0, settings.array().get(key).length);
     }
+
+    @Test
+    public void test_singleDocumentPerKey() {
+        String key = "key";
+        settings.array().add(key, "a");
+        settings.array().add(key, "b");
+        settings.array().add(key, "a");
+        assertEquals(2, settings.array().get(key).length);
+        assertEquals("a", settings.array().get(key)[0]);
+        assertEquals("b", settings.array().get(key)[1]);
+
+        runner.refresh();
+        assertFalse(runner.admin().indices().prepareExists(".suggest_array." + id.toLowerCase()).execute().actionGet().isExists());
+        assertEquals(
+                1,
+                runner.client().prepareSearch(".suggest_array")
+                        .setQuery(QueryBuilders.boolQuery().filter(QueryBuilders.termQuery(FieldNames.ARRAY_KEY, key))
+                                .filter(QueryBuilders.termQuery("settingsId", id))).execute().actionGet().getHits().getTotalHits());
+    }
+
+    @Test
+    public void test_migrateLegacyIndex() throws Exception {
+        String legacyIndex = ".suggest_array." + id.toLowerCase();
+        String key = "legacyKey";
+        runner.createIndex(legacyIndex, (Settings) null);
+        runner.insert(legacyIndex, id, "2", "{\"key\":\"" + key + "\",\"value\":\"b\",\"@timestamp\":\"2017-01-02T00:00:00\"}");
+        runner.insert(legacyIndex, id, "1", "{\"key\":\"" + key + "\",\"value\":\"a\",\"@timestamp\":\"2017-01-01T00:00:00\"}");
+        runner.refresh();
+
+        SuggestSettings migrated = Suggester.builder().build(runner.client(), id).settings();
+        assertEquals(2, migrated.array().get(key).length);
+        assertEquals("a", migrated.array().get(key)[0]);
+        assertEquals("b", migrated.array().get(key)[1]);
+        assertFalse(runner.admin().indices().prepareExists(legacyIndex).execute().actionGet().isExists());
+    }
+
+    @Test
+    public void test_migrateLegacyIndexConcurrently() throws Exception {
+        String legacyIndex = ".suggest_array." + id.toLowerCase();
+        String key = "concurrentKey";
+        runner.createIndex(legacyIndex, (Settings) null);
+        for (int i = 0; i < 100; i++) {
+            runner.insert(legacyIndex, id, String.valueOf(i), "{\"key\":\"" + key + "\",\"value\":\"v" + i
+                    + "\",\"@timestamp\":\"2017-01-01T00:00:00\"}");
+        }
+        runner.refresh();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<SuggestSettings>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> Suggester.builder().build(runner.client(), id).settings()));
+            }
+            for (Future<SuggestSettings> future : futures) {
+                assertEquals(100, future.get().array().get(key).length);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertFalse(runner.admin().indices().prepareExists(legacyIndex).execute().actionGet().isExists());
+    }
 }
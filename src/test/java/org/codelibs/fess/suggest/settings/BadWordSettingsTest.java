@@ -1,5 +1,7 @@
 package org.codelibs.fess.suggest.settings;
 
+import java.util.Arrays;
+
 import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner;
 import org.codelibs.fess.suggest.Suggester;
 import org.elasticsearch.index.IndexNotFoundException;
@@ -112,4 +114,28 @@ public class BadWordSettingsTest {
         assertEquals(0, settings.badword().get(false).length);
     }
 
+    @Test
+    public void test_bulkMutation() {
+        settings.badword().addAll(Arrays.asList("a", "b", "c", "b"));
+        assertEquals(3, settings.badword().get(false).length);
+        assertEquals("a", settings.badword().get(false)[0]);
+        assertEquals("b", settings.badword().get(false)[1]);
+        assertEquals("c", settings.badword().get(false)[2]);
+
+        settings.badword().deleteAll(Arrays.asList("a", "c"));
+        assertEquals(1, settings.badword().get(false).length);
+        assertEquals("b", settings.badword().get(false)[0]);
+
+        settings.badword().replaceAll(Arrays.asList("x", "y"));
+        assertEquals(2, settings.badword().get(false).length);
+        assertEquals("x", settings.badword().get(false)[0]);
+        assertEquals("y", settings.badword().get(false)[1]);
+
+        try {
+            settings.badword().addAll(Arrays.asList("z", "aaa bbb"));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals(2, settings.badword().get(false).length);
+        }
+    }
 }
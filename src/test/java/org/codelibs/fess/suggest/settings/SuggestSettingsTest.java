@@ -108,4 +108,29 @@ public class SuggestSettingsTest {
         assertEquals(true, settings.getAsBoolean(key, false));
     }
 
+    @Test
+    public void test_cachedSnapshot() {
+        String key = "key";
+        settings.set(key, "value1");
+        assertEquals("value1", settings.getAsString(key, ""));
+        assertEquals(0, settings.badword().get(false).length);
+
+        SuggestSettings anotherSettingsInstance = SuggestSettings.builder().build(runner.client(), id);
+        anotherSettingsInstance.init();
+        anotherSettingsInstance.set(key, "value2");
+        anotherSettingsInstance.badword().add("badword");
+        assertEquals("value2", anotherSettingsInstance.getAsString(key, ""));
+
+        assertEquals("value1", settings.getAsString(key, ""));
+        assertEquals(0, settings.badword().get(false).length);
+        settings.reload();
+        assertEquals("value2", settings.getAsString(key, ""));
+        assertEquals(1, settings.badword().get(false).length);
+
+        SuggestSettings noCacheInstance = SuggestSettings.builder().setReloadInterval(0).build(runner.client(), id);
+        noCacheInstance.init();
+        assertEquals(1, noCacheInstance.badword().get(false).length);
+        anotherSettingsInstance.badword().delete("badword");
+        assertEquals(0, noCacheInstance.badword().get(false).length);
+    }
 }
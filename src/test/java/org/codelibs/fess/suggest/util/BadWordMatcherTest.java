@@ -0,0 +1,67 @@
+package org.codelibs.fess.suggest.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BadWordMatcherTest {
+    @Test
+    public void test_matches() throws Exception {
+        final BadWordMatcher matcher = new BadWordMatcher(new String[] { "he", "she", "his", "hers", "悪い" });
+        assertTrue(matcher.matches("ushers"));
+        assertTrue(matcher.matches("this"));
+        assertTrue(matcher.matches("とても悪い単語"));
+        assertFalse(matcher.matches("hi"));
+        assertFalse(matcher.matches("悪"));
+        assertFalse(matcher.matches(""));
+        assertFalse(matcher.matches(null));
+    }
+
+    @Test
+    public void test_failureTransition() throws Exception {
+        final BadWordMatcher matcher = new BadWordMatcher(new String[] { "abcd", "bce", "c" });
+        assertTrue(matcher.matches("abce"));
+        assertTrue(matcher.matches("xxc"));
+        assertFalse(new BadWordMatcher(new String[] { "abcd", "bce" }).matches("abcbcd"));
+        assertTrue(new BadWordMatcher(new String[] { "abcd", "bcd" }).matches("abcbcd"));
+    }
+
+    @Test
+    public void test_emptyWords() throws Exception {
+        assertFalse(new BadWordMatcher(new String[0]).matches("test"));
+        assertTrue(new BadWordMatcher(new String[] { "" }).matches("test"));
+    }
+
+    @Test
+    public void test_sameAsContains() throws Exception {
+        final Random random = new Random(1);
+        final String[] words = new String[200];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = randomString(random, 1 + random.nextInt(4));
+        }
+        final BadWordMatcher matcher = new BadWordMatcher(words);
+        for (int i = 0; i < 10000; i++) {
+            final String text = randomString(random, random.nextInt(12));
+            boolean expected = false;
+            for (final String word : words) {
+                if (text.contains(word)) {
+                    expected = true;
+                    break;
+                }
+            }
+            assertEquals(text, expected, matcher.matches(text));
+        }
+    }
+
+    private String randomString(final Random random, final int length) {
+        final StringBuilder buf = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            buf.append((char) ('a' + random.nextInt(6)));
+        }
+        return buf.toString();
+    }
+}
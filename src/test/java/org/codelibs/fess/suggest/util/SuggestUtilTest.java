@@ -0,0 +1,55 @@
+package org.codelibs.fess.suggest.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+import org.codelibs.fess.suggest.entity.SuggestItem;
+import org.junit.Test;
+
+public class SuggestUtilTest {
+    @Test
+    public void test_createRouting() throws Exception {
+        assertEquals("k", SuggestUtil.createRouting(createItem("kensaku")));
+        assertEquals("k", SuggestUtil.createRouting(createItem("けんさく")));
+        assertEquals("k", SuggestUtil.createRouting(createItem("ケンサク")));
+        assertEquals("t", SuggestUtil.createRouting(createItem("chikara")));
+        assertEquals("t", SuggestUtil.createRouting(createItem("ちから")));
+        assertEquals("k", SuggestUtil.createRouting(createItem("kensaku", "sagasu")));
+        assertEquals("k", SuggestUtil.createRouting(createItem("sagasu", "kensaku")));
+    }
+
+    @Test
+    public void test_createRoutings() throws Exception {
+        for (final String reading : new String[] { "kensaku", "けんさく", "chikara", "ちから", "jikan", "fuji", "cake" }) {
+            final String routing = SuggestUtil.createRouting(createItem(reading));
+            for (int i = 1; i <= reading.length(); i++) {
+                final Set<String> routings = SuggestUtil.createRoutings(Collections.singletonList(reading.substring(0, i)));
+                assertTrue(reading + ":" + i + ":" + routings, routings.contains(routing));
+            }
+        }
+        assertTrue(SuggestUtil.createRoutings(Arrays.asList("k", "")).isEmpty());
+    }
+
+    @Test
+    public void test_createSuggestTextId() throws Exception {
+        assertEquals(22, SuggestUtil.createSuggestTextId("検索 エンジン").length());
+        assertEquals(SuggestUtil.createSuggestTextId("検索 エンジン"), SuggestUtil.createSuggestTextId("検索 エンジン", false));
+        assertEquals("5qSc57Si", SuggestUtil.createSuggestTextId("検索", true));
+        assertEquals(445, SuggestUtil.createLegacySuggestTextId(String.join("", Collections.nCopies(400, "ab"))).length());
+    }
+
+    @Test
+    public void test_getMappings() throws Exception {
+        assertEquals(SuggestUtil.getDefaultMappings(), SuggestUtil.getMappings(false));
+        assertTrue(SuggestUtil.getMappings(true).startsWith("{\"_routing\":{\"required\":true},"));
+    }
+
+    private SuggestItem createItem(final String... readings) {
+        return new SuggestItem(new String[] { "text" }, new String[][] { readings }, new String[] { "content" }, 1, 0, -1,
+                new String[0], new String[0], null, SuggestItem.Kind.DOCUMENT);
+    }
+}